@@ -0,0 +1,128 @@
+package db.migration;
+
+import searchengine.mapping.PositionList;
+import searchengine.mapping.PostingBlock;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Удаление страниц в миграциях, как BatchPageInsert.deletePages: страницы убираются из блоков
+ * posting_block своих лемм по page.lemma_ids, частоты этих лемм уменьшаются, леммы, которые
+ * больше не встречаются на сайте, удаляются.
+ */
+final class PageRemoval {
+    private static final int CHUNK = 500;
+
+    private PageRemoval() {
+    }
+
+    static void delete(Connection connection, List<Integer> pageIds) throws SQLException {
+        for (int from = 0; from < pageIds.size(); from += CHUNK) {
+            deleteChunk(connection, pageIds.subList(from, Math.min(pageIds.size(), from + CHUNK)));
+        }
+    }
+
+    private static void deleteChunk(Connection connection, List<Integer> pageIds) throws SQLException {
+        Map<Integer, Integer> pagesPerLemma = new HashMap<>();
+        try (PreparedStatement select = prepare(connection, "SELECT lemma_ids FROM page WHERE id IN (%s)", pageIds)) {
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    for (int lemmaId : PositionList.decode(rs.getBytes(1))) {
+                        pagesPerLemma.merge(lemmaId, 1, Integer::sum);
+                    }
+                }
+            }
+        }
+        try (PreparedStatement update = connection.prepareStatement("UPDATE lemma SET frequency = frequency - ? WHERE id = ?")) {
+            for (Map.Entry<Integer, Integer> lemma : pagesPerLemma.entrySet()) {
+                update.setInt(1, lemma.getValue());
+                update.setInt(2, lemma.getKey());
+                update.addBatch();
+            }
+            update.executeBatch();
+        }
+        List<Integer> lemmaIds = new ArrayList<>(pagesPerLemma.keySet());
+        for (int from = 0; from < lemmaIds.size(); from += CHUNK) {
+            removePostings(connection, lemmaIds.subList(from, Math.min(lemmaIds.size(), from + CHUNK)), new HashSet<>(pageIds));
+        }
+        try (PreparedStatement delete = prepare(connection, "DELETE FROM page WHERE id IN (%s)", pageIds)) {
+            delete.executeUpdate();
+        }
+        for (int from = 0; from < lemmaIds.size(); from += CHUNK) {
+            List<Integer> chunk = lemmaIds.subList(from, Math.min(lemmaIds.size(), from + CHUNK));
+            try (PreparedStatement delete = prepare(connection, "DELETE b FROM posting_block b JOIN lemma l ON l.id = b.lemma_id"
+                    + " WHERE l.frequency <= 0 AND l.id IN (%s)", chunk)) {
+                delete.executeUpdate();
+            }
+            try (PreparedStatement delete = prepare(connection, "DELETE FROM lemma WHERE frequency <= 0 AND id IN (%s)", chunk)) {
+                delete.executeUpdate();
+            }
+        }
+    }
+
+    private static void removePostings(Connection connection, List<Integer> lemmaIds, Set<Integer> pageIds) throws SQLException {
+        List<Integer> args = new ArrayList<>(lemmaIds);
+        args.add(Collections.max(pageIds));
+        args.add(Collections.min(pageIds));
+        List<Integer> emptied = new ArrayList<>();
+        try (PreparedStatement select = prepare(connection, "SELECT id, first_page_id, last_page_id, page_count, postings,"
+                + " positions FROM posting_block WHERE lemma_id IN (%s) AND first_page_id <= ? AND last_page_id >= ?",
+                lemmaIds, args);
+             PreparedStatement update = connection.prepareStatement("UPDATE posting_block SET first_page_id = ?,"
+                     + " last_page_id = ?, page_count = ?, postings = ?, positions = ? WHERE id = ?")) {
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    PostingBlock block = new PostingBlock(rs.getInt(2), rs.getInt(3), rs.getInt(4), rs.getBytes(5), rs.getBytes(6));
+                    List<PostingBlock.Entry> kept = block.entries().stream()
+                            .filter(entry -> !pageIds.contains(entry.pageId())).toList();
+                    if (kept.isEmpty()) {
+                        emptied.add(rs.getInt(1));
+                    } else if (kept.size() < block.size()) {
+                        PostingBlock rewritten = PostingBlock.encode(kept);
+                        update.setInt(1, rewritten.firstPageId());
+                        update.setInt(2, rewritten.lastPageId());
+                        update.setInt(3, rewritten.size());
+                        update.setBytes(4, rewritten.postings());
+                        update.setBytes(5, rewritten.positions());
+                        update.setInt(6, rs.getInt(1));
+                        update.addBatch();
+                    }
+                }
+            }
+            update.executeBatch();
+        }
+        if (!emptied.isEmpty()) {
+            try (PreparedStatement delete = prepare(connection, "DELETE FROM posting_block WHERE id IN (%s)", emptied)) {
+                delete.executeUpdate();
+            }
+        }
+    }
+
+    private static PreparedStatement prepare(Connection connection, String sql, List<Integer> ids) throws SQLException {
+        return prepare(connection, sql, ids, ids);
+    }
+
+    /**
+     * @param ids    значения для списка IN (%s)
+     * @param params все параметры запроса по порядку
+     */
+    private static PreparedStatement prepare(Connection connection, String sql, List<Integer> ids, List<Integer> params)
+            throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(
+                String.format(sql, String.join(",", Collections.nCopies(ids.size(), "?"))));
+        for (int i = 0; i < params.size(); i++) {
+            statement.setInt(i + 1, params.get(i));
+        }
+        return statement;
+    }
+}
@@ -0,0 +1,145 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import searchengine.mapping.PositionList;
+import searchengine.mapping.PostingBlock;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Переносит строки indexes в блоки posting_block и id лемм страниц в page.lemma_ids, затем
+ * удаляет таблицу indexes. Строки читаются порциями по диапазонам id лемм и страниц, чтобы
+ * не держать таблицу в памяти целиком. Леммы без сайта (lemma.site_id IS NULL) не относятся
+ * ни к одному индексу сайта и удаляются вместе со своими строками indexes до переноса.
+ */
+public class V5__Posting_blocks_from_index_rows extends BaseJavaMigration {
+    private static final int CHUNK = 1000;
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        deleteOrphanLemmas(connection);
+        convertPostings(connection);
+        fillPageLemmaIds(connection);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE indexes");
+        }
+    }
+
+    private static void deleteOrphanLemmas(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DELETE i FROM indexes i JOIN lemma l ON l.id = i.lemma_id WHERE l.site_id IS NULL");
+            statement.executeUpdate("DELETE FROM lemma WHERE site_id IS NULL");
+        }
+    }
+
+    private static void convertPostings(Connection connection) throws SQLException {
+        int lastLemmaId = 0;
+        Map<Integer, Integer> siteByLemma = lemmaSites(connection, lastLemmaId);
+        while (!siteByLemma.isEmpty()) {
+            List<Integer> lemmaIds = new ArrayList<>(siteByLemma.keySet());
+            Map<Integer, List<PostingBlock.Entry>> entries = new LinkedHashMap<>();
+            try (PreparedStatement select = connection.prepareStatement("SELECT lemma_id, page_id, runk, positions FROM indexes"
+                    + " WHERE lemma_id BETWEEN ? AND ? AND page_id IS NOT NULL ORDER BY lemma_id, page_id")) {
+                select.setInt(1, lemmaIds.get(0));
+                select.setInt(2, lemmaIds.get(lemmaIds.size() - 1));
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        entries.computeIfAbsent(rs.getInt(1), id -> new ArrayList<>()).add(new PostingBlock.Entry(
+                                rs.getInt(2), Math.round(rs.getFloat(3)), rs.getBytes(4)));
+                    }
+                }
+            }
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO posting_block (site_id, lemma_id,"
+                    + " first_page_id, last_page_id, page_count, postings, positions) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+                for (Map.Entry<Integer, List<PostingBlock.Entry>> lemma : entries.entrySet()) {
+                    Integer siteId = siteByLemma.get(lemma.getKey());
+                    if (siteId == null) {
+                        continue;
+                    }
+                    for (PostingBlock block : PostingBlock.split(lemma.getValue(), PostingBlock.MAX_SIZE)) {
+                        insert.setInt(1, siteId);
+                        insert.setInt(2, lemma.getKey());
+                        insert.setInt(3, block.firstPageId());
+                        insert.setInt(4, block.lastPageId());
+                        insert.setInt(5, block.size());
+                        insert.setBytes(6, block.postings());
+                        insert.setBytes(7, block.positions());
+                        insert.addBatch();
+                    }
+                }
+                insert.executeBatch();
+            }
+            lastLemmaId = lemmaIds.get(lemmaIds.size() - 1);
+            siteByLemma = lemmaSites(connection, lastLemmaId);
+        }
+    }
+
+    /**
+     * Следующая порция лемм после id after с их сайтами; лемма, у которой сайт всё же оказался NULL,
+     * в порции есть, но без сайта, и её строки indexes пропускаются.
+     */
+    private static Map<Integer, Integer> lemmaSites(Connection connection, int after) throws SQLException {
+        Map<Integer, Integer> siteByLemma = new LinkedHashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT id, site_id FROM lemma WHERE id > ? ORDER BY id LIMIT " + CHUNK)) {
+            statement.setInt(1, after);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    siteByLemma.put(rs.getInt(1), rs.getObject(2, Integer.class));
+                }
+            }
+        }
+        return siteByLemma;
+    }
+
+    private static void fillPageLemmaIds(Connection connection) throws SQLException {
+        int lastPageId = 0;
+        List<int[]> pages = nextIds(connection, "SELECT id, 0 FROM page WHERE id > ? ORDER BY id LIMIT " + CHUNK, lastPageId);
+        while (!pages.isEmpty()) {
+            Map<Integer, PositionList> lemmaIds = new LinkedHashMap<>();
+            try (PreparedStatement select = connection.prepareStatement("SELECT page_id, lemma_id FROM indexes"
+                    + " WHERE page_id BETWEEN ? AND ? AND lemma_id IS NOT NULL ORDER BY page_id, lemma_id")) {
+                select.setInt(1, pages.get(0)[0]);
+                select.setInt(2, pages.get(pages.size() - 1)[0]);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        lemmaIds.computeIfAbsent(rs.getInt(1), id -> new PositionList()).add(rs.getInt(2));
+                    }
+                }
+            }
+            try (PreparedStatement update = connection.prepareStatement("UPDATE page SET lemma_ids = ? WHERE id = ?")) {
+                for (Map.Entry<Integer, PositionList> page : lemmaIds.entrySet()) {
+                    update.setBytes(1, page.getValue().encode());
+                    update.setInt(2, page.getKey());
+                    update.addBatch();
+                }
+                update.executeBatch();
+            }
+            lastPageId = pages.get(pages.size() - 1)[0];
+            pages = nextIds(connection, "SELECT id, 0 FROM page WHERE id > ? ORDER BY id LIMIT " + CHUNK, lastPageId);
+        }
+    }
+
+    private static List<int[]> nextIds(Connection connection, String sql, int after) throws SQLException {
+        List<int[]> rows = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, after);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new int[]{rs.getInt(1), rs.getInt(2)});
+                }
+            }
+        }
+        return rows;
+    }
+}
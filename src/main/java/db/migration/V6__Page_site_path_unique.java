@@ -0,0 +1,46 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Одна строка на путь страницы сайта: уникальный ключ page_site_path (site_id, path), на который
+ * опирается SinglePageInsert. Параллельные вызовы indexPage могли сохранить страницу дважды и дважды
+ * увеличить частоты её лемм, поэтому из повторов остаётся строка с наибольшим id, а остальные
+ * удаляются вместе с записями в posting_block и частотами лемм. Путь сравнивается с учётом
+ * регистра (utf8mb4_bin): /About и /about - разные страницы, и ключ не должен их склеивать.
+ */
+public class V6__Page_site_path_unique extends BaseJavaMigration {
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE page MODIFY path VARCHAR(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL");
+        }
+        PageRemoval.delete(connection, duplicatePages(connection));
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE page DROP INDEX page_site_path, ADD CONSTRAINT page_site_path UNIQUE (site_id, path)");
+        }
+    }
+
+    private static List<Integer> duplicatePages(Connection connection) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT p.id FROM page p"
+                     + " JOIN (SELECT site_id, path, MAX(id) AS kept_id FROM page GROUP BY site_id, path HAVING COUNT(*) > 1) k"
+                     + " ON k.site_id = p.site_id AND k.path = p.path WHERE p.id <> k.kept_id ORDER BY p.id")) {
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+        }
+        return ids;
+    }
+}
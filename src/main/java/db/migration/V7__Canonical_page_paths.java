@@ -0,0 +1,106 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import searchengine.mapping.UrlCanonicalizer;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Приводит page.path к виду {@link UrlCanonicalizer#pathOf}: раньше путь был остатком ссылки после
+ * адреса сайта ("" для корня, завершающий слэш, параметры как в ссылке), и при следующей
+ * индексации KnownPages не узнавал такие страницы, а removeStalePages их удалял. Страницы,
+ * пути которых совпали после приведения, сливаются: остаётся строка с наибольшим id, остальные
+ * удаляются вместе с записями в posting_block и частотами лемм.
+ * <p>
+ * Старый путь отсчитывался от адреса сайта, новый - от корня хоста. Если у адреса сайта есть
+ * свой путь (https://a.ru/blog), путь, уже начинающийся с него, считается новым.
+ */
+public class V7__Canonical_page_paths extends BaseJavaMigration {
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        Map<Integer, String> sites = new LinkedHashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT id, url FROM site ORDER BY id")) {
+            while (rs.next()) {
+                sites.put(rs.getInt(1), rs.getString(2));
+            }
+        }
+        for (Map.Entry<Integer, String> site : sites.entrySet()) {
+            canonicalizeSite(connection, site.getKey(), site.getValue());
+        }
+    }
+
+    private static void canonicalizeSite(Connection connection, int siteId, String siteUrl) throws SQLException {
+        UrlCanonicalizer canonicalizer;
+        String sitePath;
+        try {
+            canonicalizer = new UrlCanonicalizer(siteUrl);
+            sitePath = canonicalizer.pathOf(canonicalizer.canonicalize(siteUrl));
+        } catch (RuntimeException e) {
+            return;
+        }
+        Map<String, List<Integer>> pagesByPath = new HashMap<>();
+        Map<Integer, String> renamed = new HashMap<>();
+        try (PreparedStatement select = connection.prepareStatement("SELECT id, path FROM page WHERE site_id = ? ORDER BY id")) {
+            select.setInt(1, siteId);
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    String path = rs.getString(2);
+                    String canonical = canonicalPath(canonicalizer, siteUrl, sitePath, path);
+                    pagesByPath.computeIfAbsent(canonical, p -> new ArrayList<>()).add(rs.getInt(1));
+                    if (!canonical.equals(path)) {
+                        renamed.put(rs.getInt(1), canonical);
+                    }
+                }
+            }
+        }
+        List<Integer> duplicates = new ArrayList<>();
+        for (List<Integer> ids : pagesByPath.values()) {
+            // id идут по возрастанию, остаётся последняя страница
+            duplicates.addAll(ids.subList(0, ids.size() - 1));
+        }
+        PageRemoval.delete(connection, duplicates);
+        duplicates.forEach(renamed::remove);
+        // сначала временные пути: новый путь одной страницы может быть ещё занят другой, которая тоже переименовывается
+        try (PreparedStatement park = connection.prepareStatement("UPDATE page SET path = CONCAT('\\0', id) WHERE id = ?");
+             PreparedStatement update = connection.prepareStatement("UPDATE page SET path = ? WHERE id = ?")) {
+            for (Map.Entry<Integer, String> page : renamed.entrySet()) {
+                park.setInt(1, page.getKey());
+                park.addBatch();
+                update.setString(1, page.getValue());
+                update.setInt(2, page.getKey());
+                update.addBatch();
+            }
+            park.executeBatch();
+            update.executeBatch();
+        }
+    }
+
+    /**
+     * @return путь в каноническом виде; если ссылку не удалось разобрать - прежний путь
+     */
+    private static String canonicalPath(UrlCanonicalizer canonicalizer, String siteUrl, String sitePath, String path) {
+        boolean fromOrigin = path.startsWith("/") && (sitePath.equals("/") || path.equals(sitePath)
+                || path.startsWith(sitePath + "/") || path.startsWith(sitePath + "?"));
+        String url = fromOrigin ? canonicalizer.getOrigin() + path : siteUrl.trim() + path;
+        String canonical;
+        try {
+            canonical = canonicalizer.canonicalize(url);
+        } catch (RuntimeException e) {
+            return path;
+        }
+        return canonical == null ? path : canonicalizer.pathOf(canonical);
+    }
+}
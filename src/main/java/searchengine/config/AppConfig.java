@@ -1,14 +1,46 @@
 package searchengine.config;
-import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import searchengine.mapping.HttpClientPageFetcher;
+import searchengine.mapping.JsoupPageFetcher;
+import searchengine.mapping.PageFetcher;
+import searchengine.mapping.ResponseGuard;
+import searchengine.repositories.SiteRepository;
+import searchengine.services.DatabaseIndexStorage;
+import searchengine.services.IndexStorage;
+import searchengine.services.SegmentIndexStorage;
+
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Configuration
 public class AppConfig {
 
     @Bean
-    public RussianLuceneMorphology luceneMorphology() throws Exception {
-        return new RussianLuceneMorphology();
+    public ResponseGuard responseGuard(AppConfigProperties connectionSetting) {
+        return new ResponseGuard(connectionSetting);
+    }
+
+    @Bean
+    public PageFetcher pageFetcher(AppConfigProperties connectionSetting, ResponseGuard responseGuard) {
+        return connectionSetting.getFetcherMode() == FetcherMode.ASYNC
+                ? new HttpClientPageFetcher(connectionSetting, responseGuard)
+                : new JsoupPageFetcher(connectionSetting, responseGuard);
+    }
+
+    @Bean
+    public IndexStorage indexStorage(IndexStorageSettings settings, JdbcTemplate jdbcTemplate, SiteRepository siteRepository) {
+        return settings.getBackend() == IndexStorageBackend.SEGMENTS
+                ? new SegmentIndexStorage(jdbcTemplate, siteRepository, Path.of(settings.getDirectory()),
+                        settings.getRebuildDelayMs())
+                : new DatabaseIndexStorage(jdbcTemplate);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService crawlerParseExecutor() {
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
     }
 
 
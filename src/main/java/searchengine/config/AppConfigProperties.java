@@ -6,6 +6,8 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 
 
 @Setter
@@ -18,5 +20,9 @@ public class AppConfigProperties {
     private String userAgent;
     private String referer;
     private int timeout;
+    private FetcherMode fetcherMode = FetcherMode.BLOCKING;
+    private int fetchThreads = Runtime.getRuntime().availableProcessors();
+    private long maxBodySize = 5 * 1024 * 1024;
+    private List<String> allowedContentTypes = List.of("text/html", "application/xhtml+xml");
 
 }
@@ -0,0 +1,15 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "bulk-load-settings")
+public class BulkLoadSettings {
+    private int chunkRows = 500;
+    private long chunkBytes = 8L * 1024 * 1024;
+}
@@ -0,0 +1,15 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "connection-pool-settings")
+public class ConnectionPoolSettings {
+    private PoolSettings read = new PoolSettings(10, 2, 5000);
+    private PoolSettings write = new PoolSettings(4, 1, 60000);
+}
@@ -0,0 +1,51 @@
+package searchengine.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import searchengine.services.ConnectionPoolMetrics;
+
+import javax.sql.DataSource;
+
+/**
+ * Два пула соединений к одной БД из spring.datasource: поиск и статистика работают
+ * в транзакциях readOnly и берут соединения из пула чтения, запись при индексации - из
+ * пула записи, поэтому пачки индексации не занимают соединения, нужные поиску.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Bean(destroyMethod = "close")
+    public HikariDataSource readDataSource(DataSourceProperties properties, ConnectionPoolSettings settings,
+                                           ConnectionPoolMetrics metrics) {
+        return pool(properties, "read", settings.getRead(), metrics);
+    }
+
+    @Bean(destroyMethod = "close")
+    public HikariDataSource writeDataSource(DataSourceProperties properties, ConnectionPoolSettings settings,
+                                            ConnectionPoolMetrics metrics) {
+        return pool(properties, "write", settings.getWrite(), metrics);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("readDataSource") DataSource read,
+                                 @Qualifier("writeDataSource") DataSource write) {
+        return new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(read, write));
+    }
+
+    private static HikariDataSource pool(DataSourceProperties properties, String name,
+                                         PoolSettings settings, ConnectionPoolMetrics metrics) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName(name);
+        dataSource.setMaximumPoolSize(settings.getMaximumPoolSize());
+        dataSource.setMinimumIdle(Math.min(settings.getMinimumIdle(), settings.getMaximumPoolSize()));
+        dataSource.setConnectionTimeout(settings.getConnectionTimeoutMs());
+        dataSource.setMetricsTrackerFactory(metrics);
+        return dataSource;
+    }
+}
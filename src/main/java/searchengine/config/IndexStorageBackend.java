@@ -0,0 +1,9 @@
+package searchengine.config;
+
+/**
+ * Откуда поиск читает обратный индекс: DATABASE - таблицы MySQL, SEGMENTS - файлы сегментов,
+ * отображённые в память.
+ */
+public enum IndexStorageBackend {
+    DATABASE, SEGMENTS
+}
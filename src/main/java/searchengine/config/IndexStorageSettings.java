@@ -0,0 +1,16 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "index-storage-settings")
+public class IndexStorageSettings {
+    private IndexStorageBackend backend = IndexStorageBackend.DATABASE;
+    private String directory = "index";
+    private long rebuildDelayMs = 60000;
+}
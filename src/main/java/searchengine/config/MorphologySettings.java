@@ -0,0 +1,17 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "morphology-settings")
+public class MorphologySettings {
+    private long cacheMaxBytes = 64L * 1024 * 1024;
+    private List<MorphologyLanguage> languages = List.of(MorphologyLanguage.RUSSIAN, MorphologyLanguage.ENGLISH);
+}
@@ -0,0 +1,8 @@
+package searchengine.config;
+
+/**
+ * COMPRESSED - HTML страницы хранится сжатым, TEXT_ONLY - хранится только извлечённый текст.
+ */
+public enum PageContentMode {
+    COMPRESSED, TEXT_ONLY
+}
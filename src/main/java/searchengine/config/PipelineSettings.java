@@ -0,0 +1,19 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "pipeline-settings")
+public class PipelineSettings {
+    private int queueCapacity = 200;
+    private int analysisThreads = Runtime.getRuntime().availableProcessors();
+    private int analysisQueueCapacity = 500;
+    private int batchSize = 100;
+    private long flushIntervalMs = 5000;
+    private long checkpointIntervalMs = 60000;
+}
@@ -0,0 +1,20 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Setter
+@Getter
+@NoArgsConstructor
+public class PoolSettings {
+    private int maximumPoolSize;
+    private int minimumIdle;
+    private long connectionTimeoutMs;
+
+    PoolSettings(int maximumPoolSize, int minimumIdle, long connectionTimeoutMs) {
+        this.maximumPoolSize = maximumPoolSize;
+        this.minimumIdle = minimumIdle;
+        this.connectionTimeoutMs = connectionTimeoutMs;
+    }
+}
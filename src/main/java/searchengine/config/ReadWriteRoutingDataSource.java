@@ -0,0 +1,29 @@
+package searchengine.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Внутри транзакций readOnly отдаёт соединения пула чтения, в остальных случаях - пула записи.
+ * Признак readOnly выставляется уже после начала транзакции, поэтому источник используется
+ * за LazyConnectionDataSourceProxy, который берёт соединение из пула при первом запросе.
+ */
+class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+    private enum Route {
+        READ, WRITE
+    }
+
+    ReadWriteRoutingDataSource(DataSource read, DataSource write) {
+        setTargetDataSources(Map.of(Route.READ, read, Route.WRITE, write));
+        setDefaultTargetDataSource(write);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? Route.READ : Route.WRITE;
+    }
+}
@@ -13,4 +13,8 @@ import java.util.List;
 @ConfigurationProperties(prefix = "indexing-settings")
 public class SitesList {
     private List<Website> sites;
+    /**
+     * Сайтов, которые обходятся одновременно; 0 - число процессоров для BLOCKING и все сайты для ASYNC.
+     */
+    private int parallelSites;
 }
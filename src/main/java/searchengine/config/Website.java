@@ -3,9 +3,21 @@ package searchengine.config;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.time.Duration;
+
 @Setter
 @Getter
 public class Website {
     private String url;
     private String name;
+    /**
+     * 0 - по умолчанию загрузчика, см. {@link searchengine.mapping.PageFetcher#defaultRequestsPerHost()}.
+     */
+    private int maxConcurrentRequests;
+    private double requestsPerSecond = 2;
+    private boolean respectRobotsTxt = true;
+    private int maxDepth;
+    private int maxPages;
+    private Duration maxWallTime;
+    private long maxBytes;
 }
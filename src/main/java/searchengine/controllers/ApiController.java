@@ -4,15 +4,19 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import searchengine.dto.IndexingMode;
 import searchengine.dto.IndexingResponse;
 import searchengine.dto.Response;
 import searchengine.dto.ResponseSearch;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.services.IndexingPage;
 import searchengine.services.IndexingService;
+import searchengine.services.MetricsService;
 import searchengine.services.SearchService;
 import searchengine.services.StatisticsService;
 
+import java.util.Map;
+
 
 @Slf4j
 @RestController
@@ -25,6 +29,7 @@ public class ApiController {
     private final IndexingService indexingService;
     private final IndexingPage indexingPage;
     private final SearchService searchService;
+    private final MetricsService metricsService;
 
 
     @GetMapping("/statistics")
@@ -33,9 +38,14 @@ public class ApiController {
     }
 
 
+    @GetMapping("/metrics")
+    public Map<String, Map<String, Number>> metrics() {
+        return metricsService.getMetrics();
+    }
+
     @GetMapping("/startIndexing")
-    public IndexingResponse startIndexing() {
-        return indexingService.startIndexing();
+    public IndexingResponse startIndexing(@RequestParam(defaultValue = "INCREMENTAL") IndexingMode mode) {
+        return indexingService.startIndexing(mode);
     }
 
     @GetMapping("/stopIndexing")
@@ -0,0 +1,13 @@
+package searchengine.dto;
+
+/**
+ * INCREMENTAL - обход с главной страницы, неизменившиеся страницы не переиндексируются;
+ * RESUME - продолжение прерванного обхода с контрольной точки, если она есть;
+ * FULL - полная переиндексация в теневую копию сайта, которая после успешного обхода
+ * подменяет действующую, а до этого поиск работает по старым данным.
+ */
+public enum IndexingMode {
+    INCREMENTAL,
+    RESUME,
+    FULL
+}
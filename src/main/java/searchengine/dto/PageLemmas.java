@@ -0,0 +1,16 @@
+package searchengine.dto;
+
+import searchengine.mapping.PositionList;
+import searchengine.model.Page;
+
+/**
+ * @param lemmaIds  номера лемм страницы в словаре сайта
+ * @param positions позиции вхождений леммы с тем же индексом в lemmaIds
+ */
+public record PageLemmas(
+        Page page,
+        int[] lemmaIds,
+        PositionList[] positions
+) {
+
+}
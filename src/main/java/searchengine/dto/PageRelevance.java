@@ -1,8 +1,7 @@
 package searchengine.dto;
-import searchengine.model.Page;
 
 public record PageRelevance(
-        Page page,
+        PageSummary page,
         Double absoluteRelevance,
         Double relativeRelevance
 ) {
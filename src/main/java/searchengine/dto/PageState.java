@@ -0,0 +1,11 @@
+package searchengine.dto;
+
+public record PageState(
+        Integer id,
+        String path,
+        String etag,
+        String lastModified,
+        String contentHash
+) {
+
+}
@@ -0,0 +1,14 @@
+package searchengine.dto;
+
+/**
+ * Поля страницы, нужные для выдачи поиска, без HTML и ссылок страницы.
+ */
+public record PageSummary(
+        Integer id,
+        Integer siteId,
+        String path,
+        String title,
+        String text
+) {
+
+}
@@ -0,0 +1,83 @@
+package searchengine.dto;
+
+import java.util.Arrays;
+
+/**
+ * Страницы сайта, на которых встречается лемма, в порядке возрастания id, и ранг леммы на каждой.
+ */
+public record Postings(int[] pageIds, float[] ranks) {
+    public static final Postings EMPTY = new Postings(new int[0], new float[0]);
+
+    public int size() {
+        return pageIds.length;
+    }
+
+    /**
+     * Страницы, которые есть в обоих списках, с суммой рангов.
+     */
+    public Postings intersect(Postings other) {
+        int[] ids = new int[Math.min(size(), other.size())];
+        float[] sums = new float[ids.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size() && j < other.size()) {
+            int left = pageIds[i];
+            int right = other.pageIds[j];
+            if (left < right) {
+                i++;
+            } else if (left > right) {
+                j++;
+            } else {
+                ids[count] = left;
+                sums[count++] = ranks[i++] + other.ranks[j++];
+            }
+        }
+        return new Postings(Arrays.copyOf(ids, count), Arrays.copyOf(sums, count));
+    }
+
+    public static final class Builder {
+        private int[] pageIds = new int[16];
+        private float[] ranks = new float[16];
+        private int count;
+        private boolean sorted = true;
+
+        /**
+         * Страницы можно добавлять в любом порядке, но каждую не больше одного раза;
+         * при сборке они упорядочиваются по id.
+         */
+        public Builder add(int pageId, float rank) {
+            if (count == pageIds.length) {
+                pageIds = Arrays.copyOf(pageIds, count * 2);
+                ranks = Arrays.copyOf(ranks, count * 2);
+            }
+            if (count > 0 && pageIds[count - 1] >= pageId) {
+                sorted = false;
+            }
+            pageIds[count] = pageId;
+            ranks[count++] = rank;
+            return this;
+        }
+
+        public Postings build() {
+            if (count == 0) {
+                return EMPTY;
+            }
+            if (sorted) {
+                return new Postings(Arrays.copyOf(pageIds, count), Arrays.copyOf(ranks, count));
+            }
+            long[] order = new long[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = (long) pageIds[i] << 32 | i;
+            }
+            Arrays.sort(order);
+            int[] sortedIds = new int[count];
+            float[] sortedRanks = new float[count];
+            for (int i = 0; i < count; i++) {
+                sortedIds[i] = (int) (order[i] >>> 32);
+                sortedRanks[i] = ranks[(int) order[i]];
+            }
+            return new Postings(sortedIds, sortedRanks);
+        }
+    }
+}
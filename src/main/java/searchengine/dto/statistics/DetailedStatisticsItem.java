@@ -11,4 +11,8 @@ public class DetailedStatisticsItem {
     private String error;
     private int pages;
     private int lemmas;
+    /** страниц, зафиксированных в БД текущей или последней индексацией */
+    private int committedPages;
+    /** ссылок в очереди обхода, пока сайт индексируется */
+    private int queuedUrls;
 }
@@ -0,0 +1,73 @@
+package searchengine.mapping;
+
+import searchengine.config.Website;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограничения обхода одного сайта. Нулевое или отсутствующее значение означает
+ * отсутствие ограничения. Глубина ограничивает, какие ссылки попадают в очередь,
+ * остальные лимиты проверяются перед каждым запросом и останавливают обход.
+ */
+public class CrawlBudget {
+    private final int maxDepth;
+    private final int maxPages;
+    private final long maxWallTimeNanos;
+    private final long maxBytes;
+    private final long startedNanos = System.nanoTime();
+    private final AtomicInteger pages = new AtomicInteger();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicInteger prunedLinks = new AtomicInteger();
+
+    public CrawlBudget(Website website) {
+        this(website.getMaxDepth(), website.getMaxPages(), website.getMaxWallTime(), website.getMaxBytes());
+    }
+
+    public CrawlBudget(int maxDepth, int maxPages, Duration maxWallTime, long maxBytes) {
+        this.maxDepth = maxDepth;
+        this.maxPages = maxPages;
+        this.maxWallTimeNanos = maxWallTime == null ? 0 : maxWallTime.toNanos();
+        this.maxBytes = maxBytes;
+    }
+
+    public static CrawlBudget unlimited() {
+        return new CrawlBudget(0, 0, null, 0);
+    }
+
+    public boolean allowsDepth(int depth) {
+        if (maxDepth > 0 && depth > maxDepth) {
+            prunedLinks.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Учитывает очередной запрос.
+     *
+     * @return причина остановки обхода или null, если запрос укладывается в лимиты
+     */
+    public String charge() {
+        if (maxPages > 0 && pages.get() >= maxPages) {
+            return "Обход остановлен: достигнут лимит страниц " + maxPages;
+        }
+        if (maxWallTimeNanos > 0 && System.nanoTime() - startedNanos >= maxWallTimeNanos) {
+            return "Обход остановлен: истекло время обхода " + Duration.ofNanos(maxWallTimeNanos);
+        }
+        if (maxBytes > 0 && bytes.get() >= maxBytes) {
+            return "Обход остановлен: загружено больше " + maxBytes + " байт";
+        }
+        pages.incrementAndGet();
+        return null;
+    }
+
+    public void addBytes(long count) {
+        bytes.addAndGet(count);
+    }
+
+    public int getPrunedLinks() {
+        return prunedLinks.get();
+    }
+}
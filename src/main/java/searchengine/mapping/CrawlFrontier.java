@@ -0,0 +1,168 @@
+package searchengine.mapping;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Очередь ссылок сайта, ожидающих обхода. Ссылки выдаются по приоритету: сначала
+ * менее глубокие, среди равных по глубине - без параметров запроса. Обход закончен,
+ * когда очередь пуста и ни одна из выданных ссылок не находится в обработке.
+ */
+public class CrawlFrontier {
+    private final PriorityQueue<FrontierEntry> queue = new PriorityQueue<>();
+    private final VisitedUrlSet visitedUrls = new VisitedUrlSet();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Set<FrontierEntry> inFlight = new HashSet<>();
+    private long sequence;
+    private boolean closed;
+
+    public record FrontierEntry(String url, int depth, int priority, long sequence) implements Comparable<FrontierEntry> {
+        @Override
+        public int compareTo(FrontierEntry other) {
+            int result = Integer.compare(priority, other.priority);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    public boolean offer(String url, int depth) {
+        lock.lock();
+        try {
+            if (closed || !visitedUrls.add(url)) {
+                return false;
+            }
+            queue.add(new FrontierEntry(url, depth, priorityOf(url, depth), sequence++));
+            changed.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Восстанавливает очередь из контрольной точки: отпечатки уже найденных ссылок
+     * и ссылки, которые к моменту сохранения ещё не были обработаны.
+     */
+    public void restore(CrawlSnapshot snapshot) {
+        lock.lock();
+        try {
+            for (long fingerprint : snapshot.visited()) {
+                visitedUrls.add(fingerprint);
+            }
+            for (FrontierEntry entry : snapshot.pending()) {
+                visitedUrls.add(entry.url());
+                queue.add(new FrontierEntry(entry.url(), entry.depth(), priorityOf(entry.url(), entry.depth()), sequence++));
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Снимок для контрольной точки: ссылки в очереди и в обработке плюс отпечатки всех найденных ссылок.
+     */
+    public CrawlSnapshot snapshot() {
+        lock.lock();
+        try {
+            List<FrontierEntry> pending = new ArrayList<>(queue.size() + inFlight.size());
+            pending.addAll(inFlight);
+            pending.addAll(queue);
+            return new CrawlSnapshot(pending, visitedUrls.toArray());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean wasFound(String url) {
+        return visitedUrls.contains(url);
+    }
+
+    /**
+     * Возвращает следующую ссылку или null, если обход закончен или остановлен.
+     * Каждую полученную ссылку нужно вернуть через {@link #done(FrontierEntry)}.
+     */
+    public FrontierEntry take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (!closed && queue.isEmpty() && !inFlight.isEmpty()) {
+                changed.await();
+            }
+            if (closed || queue.isEmpty()) {
+                changed.signalAll();
+                return null;
+            }
+            FrontierEntry entry = queue.poll();
+            inFlight.add(entry);
+            return entry;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void done(FrontierEntry entry) {
+        lock.lock();
+        try {
+            inFlight.remove(entry);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает выданную ссылку в очередь необработанной - чтобы она попала в контрольную точку.
+     */
+    public void giveBack(FrontierEntry entry) {
+        lock.lock();
+        try {
+            inFlight.remove(entry);
+            queue.add(entry);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ждёт, пока не будут возвращены все выданные ссылки.
+     */
+    public void awaitIdle() throws InterruptedException {
+        lock.lock();
+        try {
+            while (!inFlight.isEmpty()) {
+                changed.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static int priorityOf(String url, int depth) {
+        return depth * 2 + (url.indexOf('?') >= 0 ? 1 : 0);
+    }
+}
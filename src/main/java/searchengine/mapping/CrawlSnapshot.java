@@ -0,0 +1,14 @@
+package searchengine.mapping;
+
+import searchengine.mapping.CrawlFrontier.FrontierEntry;
+
+import java.util.List;
+
+/**
+ * Состояние обхода для контрольной точки.
+ *
+ * @param pending ссылки, которые ещё нужно обойти (в том числе загруженные, но не сохранённые в БД)
+ * @param visited отпечатки всех найденных ссылок, см. {@link VisitedUrlSet#fingerprint(CharSequence)}
+ */
+public record CrawlSnapshot(List<FrontierEntry> pending, long[] visited) {
+}
@@ -0,0 +1,11 @@
+package searchengine.mapping;
+
+/**
+ * @param skipped причина, по которой тело ответа не загружено, или null
+ */
+public record FetchResult(int code, String body, String etag, String lastModified, SkipReason skipped) {
+
+    public static FetchResult skipped(int code, SkipReason reason) {
+        return new FetchResult(code, null, null, null, reason);
+    }
+}
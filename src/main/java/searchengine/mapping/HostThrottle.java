@@ -0,0 +1,50 @@
+package searchengine.mapping;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничивает число одновременных запросов к одному хосту и частоту их отправки.
+ * Один экземпляр разделяется всеми сайтами, которые находятся на этом хосте.
+ */
+public class HostThrottle {
+    private final Semaphore permits;
+    private long intervalNanos;
+    private long nextSlotNanos = System.nanoTime();
+
+    public HostThrottle(int maxConcurrentRequests, double requestsPerSecond) {
+        this.permits = new Semaphore(Math.max(1, maxConcurrentRequests), true);
+        this.intervalNanos = requestsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond) : 0;
+    }
+
+    public void acquire() throws InterruptedException {
+        permits.acquire();
+        try {
+            long wait = reserveSlot();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        } catch (InterruptedException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * Увеличивает интервал между запросами до delaySeconds (Crawl-delay из robots.txt), но не уменьшает его.
+     */
+    public synchronized void slowDownTo(double delaySeconds) {
+        intervalNanos = Math.max(intervalNanos, (long) (delaySeconds * TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    private synchronized long reserveSlot() {
+        long now = System.nanoTime();
+        long slot = Math.max(now, nextSlotNanos);
+        nextSlotNanos = slot + intervalNanos;
+        return slot - now;
+    }
+}
@@ -0,0 +1,132 @@
+package searchengine.mapping;
+
+import searchengine.config.AppConfigProperties;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Неблокирующая загрузка через java.net.http.HttpClient. Пока запрос ждёт ответа,
+ * поток не занят, поэтому число запросов в полёте ограничено только HostThrottle.
+ * Ответ проверяется ResponseGuard по заголовкам, до того как начнёт читаться тело.
+ * HttpClient не распаковывает ответы сам, поэтому сжатие gzip запрашивается и снимается здесь,
+ * как это делает Jsoup.
+ */
+public class HttpClientPageFetcher implements PageFetcher {
+    private final AppConfigProperties connectionSetting;
+    private final ResponseGuard guard;
+    private final HttpClient client;
+
+    public HttpClientPageFetcher(AppConfigProperties connectionSetting, ResponseGuard guard) {
+        this.connectionSetting = connectionSetting;
+        this.guard = guard;
+        this.client = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(connectionSetting.getTimeout()))
+                .build();
+    }
+
+    @Override
+    public CompletableFuture<FetchResult> fetch(String url, String etag, String lastModified) {
+        return load(url, etag, lastModified, true);
+    }
+
+    @Override
+    public CompletableFuture<FetchResult> fetchResource(String url) {
+        return load(url, null, null, false);
+    }
+
+    /**
+     * Запрос в полёте не занимает поток, поэтому к медленному сайту можно держать больше запросов;
+     * частоту по-прежнему ограничивает requests-per-second сайта.
+     */
+    @Override
+    public int defaultRequestsPerHost() {
+        return 8;
+    }
+
+    private CompletableFuture<FetchResult> load(String url, String etag, String lastModified, boolean checkContentType) {
+        HttpRequest request;
+        try {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(Duration.ofMillis(connectionSetting.getTimeout()))
+                    .header("User-Agent", connectionSetting.getUserAgent())
+                    .header("Referer", connectionSetting.getReferer())
+                    .header("Accept-Encoding", "gzip")
+                    .GET();
+            if (etag != null) {
+                builder.header("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                builder.header("If-Modified-Since", lastModified);
+            }
+            request = builder.build();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return client.sendAsync(request, info -> bodySubscriber(info, checkContentType))
+                .thenApply(response -> toResult(response, checkContentType));
+    }
+
+    private HttpResponse.BodySubscriber<byte[]> bodySubscriber(HttpResponse.ResponseInfo info, boolean checkContentType) {
+        if (info.statusCode() == 304 || check(info.headers(), checkContentType) != null) {
+            return LimitedBodySubscriber.discarding();
+        }
+        return new LimitedBodySubscriber(guard.getMaxBodySize());
+    }
+
+    private FetchResult toResult(HttpResponse<byte[]> response, boolean checkContentType) {
+        String etag = response.headers().firstValue("ETag").orElse(null);
+        String lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+        if (response.statusCode() == 304) {
+            return new FetchResult(304, null, etag, lastModified, null);
+        }
+        byte[] body = decode(response, checkContentType);
+        if (body == null) {
+            SkipReason reason = check(response.headers(), checkContentType);
+            if (reason == null) {
+                reason = SkipReason.TOO_LARGE;
+            }
+            guard.skipped(reason);
+            return FetchResult.skipped(response.statusCode(), reason);
+        }
+        guard.accepted(body.length);
+        String contentType = response.headers().firstValue("Content-Type").orElse(null);
+        return new FetchResult(response.statusCode(), new String(body, ResponseGuard.charsetOf(contentType)),
+                etag, lastModified, null);
+    }
+
+    /**
+     * @return распакованное тело или null, если оно не получено или распакованное больше допустимого
+     */
+    private byte[] decode(HttpResponse<byte[]> response, boolean checkContentType) {
+        byte[] body = response.body();
+        try {
+            if (body != null && response.headers().firstValue("Content-Encoding").orElse("").equalsIgnoreCase("gzip")) {
+                body = guard.gunzip(body);
+            }
+            if (body != null && !checkContentType) {
+                body = guard.decompressResource(body);
+            }
+            return body;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private SkipReason check(HttpHeaders headers, boolean checkContentType) {
+        return guard.check(checkContentType ? headers.firstValue("Content-Type").orElse(null) : null,
+                headers.firstValueAsLong("Content-Length").orElse(-1));
+    }
+
+    @Override
+    public void close() {
+    }
+}
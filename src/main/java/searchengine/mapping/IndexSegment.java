@@ -0,0 +1,244 @@
+package searchengine.mapping;
+
+import searchengine.dto.Postings;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Неизменяемый файл обратного индекса одного сайта, читается через отображение в память.
+ * Формат: заголовок, таблица лемм с записями фиксированной длины в порядке байтов UTF-8
+ * (поиск леммы - двоичный поиск по таблице), байты лемм и списки страниц, где каждая
+ * страница - id и ранг по 4 байта, id по возрастанию.
+ */
+public final class IndexSegment {
+    private static final int MAGIC = 0x49445831;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int ENTRY_BYTES = 24;
+    private static final int POSTING_BYTES = 8;
+
+    private final MappedByteBuffer buffer;
+    private final int siteId;
+    private final int pageCount;
+    private final int lemmaCount;
+    private final int termsOffset;
+    private final int postingsOffset;
+
+    private IndexSegment(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Файл не является сегментом индекса версии " + VERSION);
+        }
+        siteId = buffer.getInt(8);
+        pageCount = buffer.getInt(12);
+        lemmaCount = buffer.getInt(16);
+        termsOffset = buffer.getInt(20);
+        postingsOffset = buffer.getInt(24);
+    }
+
+    public static IndexSegment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Сегмент индекса больше 2 ГБ: " + file);
+            }
+            return new IndexSegment(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int siteId() {
+        return siteId;
+    }
+
+    public int pageCount() {
+        return pageCount;
+    }
+
+    public int lemmaCount() {
+        return lemmaCount;
+    }
+
+    public int frequency(String lemma) {
+        int entry = find(lemma);
+        return entry < 0 ? 0 : buffer.getInt(entry + 8);
+    }
+
+    public Postings postings(String lemma) {
+        int entry = find(lemma);
+        if (entry < 0) {
+            return Postings.EMPTY;
+        }
+        int count = buffer.getInt(entry + 12);
+        int offset = postingsOffset + (int) buffer.getLong(entry + 16);
+        int[] pageIds = new int[count];
+        float[] ranks = new float[count];
+        for (int i = 0; i < count; i++) {
+            pageIds[i] = buffer.getInt(offset + i * POSTING_BYTES);
+            ranks[i] = buffer.getFloat(offset + i * POSTING_BYTES + 4);
+        }
+        return new Postings(pageIds, ranks);
+    }
+
+    /**
+     * @return смещение записи леммы или -1, если леммы в сегменте нет
+     */
+    private int find(String lemma) {
+        byte[] key = lemma.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = lemmaCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int entry = HEADER_BYTES + middle * ENTRY_BYTES;
+            int compared = compareTerm(entry, key);
+            if (compared < 0) {
+                low = middle + 1;
+            } else if (compared > 0) {
+                high = middle - 1;
+            } else {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    private int compareTerm(int entry, byte[] key) {
+        int offset = termsOffset + buffer.getInt(entry);
+        int length = buffer.getInt(entry + 4);
+        for (int i = 0; i < Math.min(length, key.length); i++) {
+            int compared = Integer.compare(buffer.get(offset + i) & 0xFF, key[i] & 0xFF);
+            if (compared != 0) {
+                return compared;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    /**
+     * Записывает сегмент: сначала словарь лемм, затем страницы, сгруппированные по леммам.
+     * Списки страниц пишутся во временный файл рядом с сегментом, поэтому в памяти держится
+     * только словарь.
+     */
+    public static final class Writer implements Closeable {
+        private final Path target;
+        private final Path postingsFile;
+        private final DataOutputStream postings;
+        private final int siteId;
+        private final int pageCount;
+        private final Map<Integer, Term> terms = new HashMap<>();
+        private Term current;
+        private long postingCount;
+
+        private static final class Term {
+            private final byte[] bytes;
+            private final int frequency;
+            private long firstPosting;
+            private int postings;
+
+            private Term(byte[] bytes, int frequency) {
+                this.bytes = bytes;
+                this.frequency = frequency;
+            }
+        }
+
+        public Writer(Path target, int siteId, int pageCount) throws IOException {
+            this.target = target;
+            this.postingsFile = target.resolveSibling(target.getFileName() + ".postings");
+            this.postings = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(postingsFile), 1 << 16));
+            this.siteId = siteId;
+            this.pageCount = pageCount;
+        }
+
+        public void lemma(int lemmaId, String lemma, int frequency) {
+            terms.put(lemmaId, new Term(lemma.getBytes(StandardCharsets.UTF_8), frequency));
+        }
+
+        /**
+         * Страницы одной леммы передаются подряд и по возрастанию id.
+         */
+        public void posting(int lemmaId, int pageId, float rank) throws IOException {
+            Term term = terms.get(lemmaId);
+            if (term == null) {
+                throw new IOException("Страница для леммы, которой нет в словаре: " + lemmaId);
+            }
+            if (term != current) {
+                if (term.postings > 0) {
+                    throw new IOException("Страницы леммы " + lemmaId + " переданы не подряд");
+                }
+                term.firstPosting = postingCount;
+                current = term;
+            }
+            postings.writeInt(pageId);
+            postings.writeFloat(rank);
+            term.postings++;
+            postingCount++;
+        }
+
+        public void finish() throws IOException {
+            postings.close();
+            List<Term> sorted = new ArrayList<>(terms.values());
+            sorted.sort((a, b) -> Arrays.compareUnsigned(a.bytes, b.bytes));
+            long termBytes = sorted.stream().mapToLong(t -> t.bytes.length).sum();
+            long termsOffset = HEADER_BYTES + (long) sorted.size() * ENTRY_BYTES;
+            long postingsOffset = termsOffset + termBytes;
+            if (postingsOffset + postingCount * POSTING_BYTES > Integer.MAX_VALUE) {
+                throw new IOException("Сегмент индекса сайта " + siteId + " больше 2 ГБ");
+            }
+            try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer head = ByteBuffer.allocate((int) termsOffset);
+                head.putInt(MAGIC).putInt(VERSION).putInt(siteId).putInt(pageCount).putInt(sorted.size())
+                        .putInt((int) termsOffset).putInt((int) postingsOffset).putInt(0);
+                int termOffset = 0;
+                for (Term term : sorted) {
+                    head.putInt(termOffset).putInt(term.bytes.length).putInt(term.frequency).putInt(term.postings)
+                            .putLong(term.firstPosting * POSTING_BYTES);
+                    termOffset += term.bytes.length;
+                }
+                head.flip();
+                writeFully(out, head);
+                ByteBuffer termBuffer = ByteBuffer.allocate((int) termBytes);
+                sorted.forEach(term -> termBuffer.put(term.bytes));
+                termBuffer.flip();
+                writeFully(out, termBuffer);
+                try (FileChannel in = FileChannel.open(postingsFile, StandardOpenOption.READ)) {
+                    long copied = 0;
+                    while (copied < in.size()) {
+                        copied += in.transferTo(copied, in.size() - copied, out);
+                    }
+                }
+                out.force(true);
+            } finally {
+                Files.deleteIfExists(postingsFile);
+            }
+        }
+
+        private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        }
+
+        /**
+         * Удаляет временный файл, если сегмент не был дописан.
+         */
+        @Override
+        public void close() throws IOException {
+            postings.close();
+            Files.deleteIfExists(postingsFile);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package searchengine.mapping;
+
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+import searchengine.config.AppConfigProperties;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Блокирующая загрузка через Jsoup: каждый запрос занимает поток из пула fetchThreads
+ * на всё время ожидания ответа. Тело читается потоком через ResponseGuard. Ответы 4xx и 5xx
+ * возвращаются со своим кодом и телом, как у {@link HttpClientPageFetcher}; сжатое gzip тело
+ * Jsoup распаковывает сам.
+ */
+public class JsoupPageFetcher implements PageFetcher {
+    private final AppConfigProperties connectionSetting;
+    private final ResponseGuard guard;
+    private final ExecutorService executor;
+
+    public JsoupPageFetcher(AppConfigProperties connectionSetting, ResponseGuard guard) {
+        this.connectionSetting = connectionSetting;
+        this.guard = guard;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, connectionSetting.getFetchThreads()));
+    }
+
+    @Override
+    public CompletableFuture<FetchResult> fetch(String url, String etag, String lastModified) {
+        return load(url, etag, lastModified, true);
+    }
+
+    @Override
+    public CompletableFuture<FetchResult> fetchResource(String url) {
+        return load(url, null, null, false);
+    }
+
+    private CompletableFuture<FetchResult> load(String url, String etag, String lastModified, boolean checkContentType) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Connection connection = Jsoup.connect(url)
+                        .userAgent(connectionSetting.getUserAgent())
+                        .referrer(connectionSetting.getReferer())
+                        .timeout(connectionSetting.getTimeout())
+                        .ignoreContentType(true)
+                        .ignoreHttpErrors(true)
+                        .maxBodySize(0);
+                if (etag != null) {
+                    connection.header("If-None-Match", etag);
+                }
+                if (lastModified != null) {
+                    connection.header("If-Modified-Since", lastModified);
+                }
+                Connection.Response response = connection.execute();
+                if (response.statusCode() == 304) {
+                    return new FetchResult(304, null, response.header("ETag"), response.header("Last-Modified"), null);
+                }
+                byte[] body = null;
+                long contentLength = contentLength(response);
+                SkipReason reason = guard.check(checkContentType ? response.contentType() : null, contentLength);
+                if (reason == null && contentLength == 0) {
+                    // при пустом теле Jsoup не открывает поток, bodyStream() бросил бы "Stream closed"
+                    body = new byte[0];
+                } else if (reason == null) {
+                    try (InputStream stream = response.bodyStream()) {
+                        body = guard.readBody(stream);
+                    }
+                    if (body != null && !checkContentType) {
+                        body = guard.decompressResource(body);
+                    }
+                    reason = body == null ? SkipReason.TOO_LARGE : null;
+                }
+                if (reason != null) {
+                    guard.skipped(reason);
+                    return FetchResult.skipped(response.statusCode(), reason);
+                }
+                guard.accepted(body.length);
+                return new FetchResult(response.statusCode(), new String(body, ResponseGuard.charsetOf(response.contentType())),
+                        response.header("ETag"), response.header("Last-Modified"), null);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    private static long contentLength(Connection.Response response) {
+        try {
+            String length = response.header("Content-Length");
+            return length == null ? -1 : Long.parseLong(length.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
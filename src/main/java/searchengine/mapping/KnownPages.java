@@ -0,0 +1,49 @@
+package searchengine.mapping;
+
+import searchengine.dto.PageState;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+/**
+ * Страницы сайта, сохранённые прошлой индексацией. По ним обходчик отправляет условные
+ * запросы и отличает неизменившиеся страницы от изменившихся. Страница удаляется из
+ * набора, как только обходчик до неё дошёл, поэтому после полного обхода в наборе
+ * остаются только исчезнувшие с сайта страницы.
+ */
+public class KnownPages {
+    private final Map<String, PageState> pages = new ConcurrentHashMap<>();
+    private final IntFunction<String> outlinksLoader;
+
+    public KnownPages(Collection<PageState> pages, IntFunction<String> outlinksLoader) {
+        pages.forEach(page -> this.pages.put(page.path(), page));
+        this.outlinksLoader = outlinksLoader;
+    }
+
+    public static KnownPages none() {
+        return new KnownPages(List.of(), id -> null);
+    }
+
+    public PageState get(String path) {
+        return pages.get(path);
+    }
+
+    public PageState markSeen(String path) {
+        return pages.remove(path);
+    }
+
+    public List<PageState> unseen() {
+        return new ArrayList<>(pages.values());
+    }
+
+    /**
+     * Сохранённые ссылки страницы - нужны, чтобы продолжить обход со страницы, на которую сервер ответил 304.
+     */
+    public List<String> storedOutlinks(PageState page) {
+        return PageAnalysis.splitOutlinks(outlinksLoader.apply(page.id()));
+    }
+}
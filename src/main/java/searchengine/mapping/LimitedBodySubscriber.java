@@ -0,0 +1,74 @@
+package searchengine.mapping;
+
+import java.io.ByteArrayOutputStream;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Накопитель тела для HttpClient, который отменяет подписку, как только тело превысит
+ * лимит, - остаток ответа по сети не читается. Тело null означает, что лимит превышен.
+ */
+class LimitedBodySubscriber implements HttpResponse.BodySubscriber<byte[]> {
+    private final long limit;
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+    private Flow.Subscription subscription;
+
+    LimitedBodySubscriber(long limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Подписчик, который сразу отказывается от тела, - для ответов, отклонённых по заголовкам.
+     */
+    static LimitedBodySubscriber discarding() {
+        return new LimitedBodySubscriber(-1);
+    }
+
+    @Override
+    public CompletionStage<byte[]> getBody() {
+        return result;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        if (limit < 0) {
+            subscription.cancel();
+            result.complete(null);
+        } else {
+            subscription.request(Long.MAX_VALUE);
+        }
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> buffers) {
+        if (result.isDone()) {
+            return;
+        }
+        for (ByteBuffer buffer : buffers) {
+            if (body.size() + buffer.remaining() > limit) {
+                subscription.cancel();
+                result.complete(null);
+                return;
+            }
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            body.writeBytes(bytes);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        result.complete(body.toByteArray());
+    }
+}
@@ -0,0 +1,45 @@
+package searchengine.mapping;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Всё, что нужно от HTML страницы: заголовок, текст и ссылки. Страница разбирается
+ * один раз при обходе, результат хранится в Page, поэтому ни индексатору, ни поиску
+ * разбирать HTML повторно не нужно.
+ */
+public record PageAnalysis(String title, String text, List<String> outlinks) {
+    private static final String LINK_SEPARATOR = "\n";
+
+    /**
+     * @param canonicalizer ссылки приводятся к каноническому виду, ссылки на другие сайты отбрасываются
+     */
+    public static PageAnalysis analyze(String html, String baseUrl, UrlCanonicalizer canonicalizer) {
+        if (html == null) {
+            return new PageAnalysis("", "", List.of());
+        }
+        Document document = Jsoup.parse(html, baseUrl);
+        Set<String> links = new LinkedHashSet<>();
+        for (Element link : document.select("a[href]")) {
+            String href = canonicalizer.canonicalize(link.attr("abs:href"));
+            if (href != null) {
+                links.add(href);
+            }
+        }
+        return new PageAnalysis(document.title(), document.text(), new ArrayList<>(links));
+    }
+
+    public String joinedOutlinks() {
+        return String.join(LINK_SEPARATOR, outlinks);
+    }
+
+    public static List<String> splitOutlinks(String joined) {
+        return joined == null || joined.isEmpty() ? List.of() : List.of(joined.split(LINK_SEPARATOR));
+    }
+}
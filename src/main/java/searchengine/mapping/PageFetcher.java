@@ -0,0 +1,35 @@
+package searchengine.mapping;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Загрузка страницы по URL. Возвращённое будущее завершается ошибкой,
+ * если страницу получить не удалось.
+ */
+public interface PageFetcher extends AutoCloseable {
+
+    default CompletableFuture<FetchResult> fetch(String url) {
+        return fetch(url, null, null);
+    }
+
+    /**
+     * Условный запрос: если etag или lastModified не null, сервер может ответить 304 без тела.
+     */
+    CompletableFuture<FetchResult> fetch(String url, String etag, String lastModified);
+
+    /**
+     * Служебный файл сайта (robots.txt, sitemap.xml): тип содержимого не проверяется, ограничение размера действует,
+     * сжатый gzip файл (sitemap.xml.gz) распаковывается.
+     */
+    CompletableFuture<FetchResult> fetchResource(String url);
+
+    /**
+     * Одновременных запросов к одному хосту, если у сайта не задан max-concurrent-requests.
+     */
+    default int defaultRequestsPerHost() {
+        return 2;
+    }
+
+    @Override
+    void close();
+}
@@ -0,0 +1,70 @@
+package searchengine.mapping;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Позиции слова на странице по возрастанию. В индексе хранятся в сжатом виде: разности
+ * соседних позиций в varint (7 бит на байт), так что частое слово занимает около байта
+ * на вхождение.
+ */
+public class PositionList {
+    private int[] positions = new int[4];
+    private int size;
+
+    /**
+     * @param position позиция не меньше последней добавленной
+     */
+    public void add(int position) {
+        if (size == positions.length) {
+            positions = Arrays.copyOf(positions, size * 2);
+        }
+        positions[size++] = position;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(positions, size);
+    }
+
+    public byte[] encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size + 4);
+        int previous = 0;
+        for (int i = 0; i < size; i++) {
+            int delta = positions[i] - previous;
+            previous = positions[i];
+            while ((delta & ~0x7F) != 0) {
+                out.write((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            out.write(delta);
+        }
+        return out.toByteArray();
+    }
+
+    public static int[] decode(byte[] encoded) {
+        if (encoded == null) {
+            return new int[0];
+        }
+        int[] result = new int[encoded.length];
+        int count = 0;
+        int previous = 0;
+        int value = 0;
+        int shift = 0;
+        for (byte b : encoded) {
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) != 0) {
+                shift += 7;
+                continue;
+            }
+            previous += value;
+            result[count++] = previous;
+            value = 0;
+            shift = 0;
+        }
+        return Arrays.copyOf(result, count);
+    }
+}
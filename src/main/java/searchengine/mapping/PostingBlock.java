@@ -0,0 +1,135 @@
+package searchengine.mapping;
+
+import searchengine.dto.Postings;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Блок списка страниц одной леммы: страницы по возрастанию id. Хранится двумя массивами байтов:
+ * postings - разности соседних id страниц и ранги в varint, их поиск декодирует последовательно;
+ * positions - позиции вхождений на каждой странице (длина в varint и {@link PositionList#encode()}),
+ * они читаются только при перезаписи блока.
+ */
+public final class PostingBlock {
+    public static final int MAX_SIZE = 1024;
+    private final int firstPageId;
+    private final int lastPageId;
+    private final int size;
+    private final byte[] postings;
+    private final byte[] positions;
+
+    /**
+     * @param positions позиции в формате {@link PositionList#encode()}
+     */
+    public record Entry(int pageId, int rank, byte[] positions) {
+    }
+
+    public PostingBlock(int firstPageId, int lastPageId, int size, byte[] postings, byte[] positions) {
+        this.firstPageId = firstPageId;
+        this.lastPageId = lastPageId;
+        this.size = size;
+        this.postings = postings;
+        this.positions = positions;
+    }
+
+    /**
+     * @param entries непустой список страниц по возрастанию id
+     */
+    public static PostingBlock encode(List<Entry> entries) {
+        ByteArrayOutputStream postings = new ByteArrayOutputStream(entries.size() * 3);
+        ByteArrayOutputStream positions = new ByteArrayOutputStream(entries.size() * 4);
+        int previous = 0;
+        for (Entry entry : entries) {
+            writeVarint(postings, entry.pageId() - previous);
+            writeVarint(postings, entry.rank());
+            previous = entry.pageId();
+            byte[] entryPositions = entry.positions() == null ? new byte[0] : entry.positions();
+            writeVarint(positions, entryPositions.length);
+            positions.writeBytes(entryPositions);
+        }
+        return new PostingBlock(entries.get(0).pageId(), previous, entries.size(), postings.toByteArray(),
+                positions.toByteArray());
+    }
+
+    /**
+     * Делит список страниц по возрастанию id на блоки не больше maxSize страниц.
+     */
+    public static List<PostingBlock> split(List<Entry> entries, int maxSize) {
+        List<PostingBlock> blocks = new ArrayList<>((entries.size() + maxSize - 1) / maxSize);
+        for (int from = 0; from < entries.size(); from += maxSize) {
+            blocks.add(encode(entries.subList(from, Math.min(entries.size(), from + maxSize))));
+        }
+        return blocks;
+    }
+
+    /**
+     * Добавляет страницы и ранги блока, не разбирая позиции.
+     */
+    public static void decodePostings(byte[] postings, Postings.Builder into) {
+        int[] cursor = {0};
+        int pageId = 0;
+        while (cursor[0] < postings.length) {
+            pageId += readVarint(postings, cursor);
+            into.add(pageId, readVarint(postings, cursor));
+        }
+    }
+
+    public List<Entry> entries() {
+        List<Entry> entries = new ArrayList<>(size);
+        int[] postingsCursor = {0};
+        int[] positionsCursor = {0};
+        int pageId = 0;
+        while (postingsCursor[0] < postings.length) {
+            pageId += readVarint(postings, postingsCursor);
+            int rank = readVarint(postings, postingsCursor);
+            int length = readVarint(positions, positionsCursor);
+            byte[] entryPositions = new byte[length];
+            System.arraycopy(positions, positionsCursor[0], entryPositions, 0, length);
+            positionsCursor[0] += length;
+            entries.add(new Entry(pageId, rank, entryPositions));
+        }
+        return entries;
+    }
+
+    public int firstPageId() {
+        return firstPageId;
+    }
+
+    public int lastPageId() {
+        return lastPageId;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public byte[] postings() {
+        return postings;
+    }
+
+    public byte[] positions() {
+        return positions;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(byte[] in, int[] cursor) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in[cursor[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
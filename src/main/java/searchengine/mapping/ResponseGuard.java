@@ -0,0 +1,142 @@
+package searchengine.mapping;
+
+import searchengine.config.AppConfigProperties;
+import searchengine.services.MetricsSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Общие для загрузчиков ограничения на ответ: по заголовкам Content-Type и Content-Length
+ * ответ отбрасывается до чтения тела, а тело читается потоком и обрывается, как только
+ * превысит maxBodySize. Ответ без Content-Type пропускается.
+ */
+public class ResponseGuard implements MetricsSource {
+    private final List<String> allowedContentTypes;
+    private final long maxBodySize;
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong skippedContentType = new AtomicLong();
+    private final AtomicLong skippedTooLarge = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+
+    public ResponseGuard(AppConfigProperties connectionSetting) {
+        this.allowedContentTypes = connectionSetting.getAllowedContentTypes().stream()
+                .map(type -> type.trim().toLowerCase(Locale.ROOT))
+                .toList();
+        this.maxBodySize = connectionSetting.getMaxBodySize();
+    }
+
+    /**
+     * @param contentLength длина из заголовка или -1, если её нет
+     * @return причина отказа или null, если тело можно читать
+     */
+    public SkipReason check(String contentType, long contentLength) {
+        if (contentType != null && !isAllowed(contentType)) {
+            return SkipReason.CONTENT_TYPE;
+        }
+        if (contentLength > maxBodySize) {
+            return SkipReason.TOO_LARGE;
+        }
+        return null;
+    }
+
+    /**
+     * Читает тело, пока оно укладывается в maxBodySize.
+     *
+     * @return тело или null, если оно оказалось больше допустимого
+     */
+    public byte[] readBody(InputStream body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int read = body.read(buffer); read != -1; read = body.read(buffer)) {
+            if (out.size() + read > maxBodySize) {
+                return null;
+            }
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Служебный файл сайта может лежать сжатым (sitemap.xml.gz): тело с сигнатурой gzip распаковывается,
+     * и maxBodySize ограничивает уже распакованный размер.
+     *
+     * @return тело, распакованное при необходимости, или null, если распакованное оно больше допустимого
+     */
+    public byte[] decompressResource(byte[] body) throws IOException {
+        if (body.length < 2 || (body[0] & 0xff) != 0x1f || (body[1] & 0xff) != 0x8b) {
+            return body;
+        }
+        return gunzip(body);
+    }
+
+    /**
+     * Распаковывает тело gzip; maxBodySize ограничивает распакованный размер.
+     *
+     * @return тело или null, если распакованное оно больше допустимого
+     */
+    public byte[] gunzip(byte[] body) throws IOException {
+        try (InputStream stream = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return readBody(stream);
+        }
+    }
+
+    public long getMaxBodySize() {
+        return maxBodySize;
+    }
+
+    public void skipped(SkipReason reason) {
+        (reason == SkipReason.CONTENT_TYPE ? skippedContentType : skippedTooLarge).incrementAndGet();
+    }
+
+    public void accepted(long bytes) {
+        accepted.incrementAndGet();
+        bytesRead.addAndGet(bytes);
+    }
+
+    public static Charset charsetOf(String contentType) {
+        if (contentType != null) {
+            for (String parameter : contentType.split(";")) {
+                String[] pair = parameter.trim().split("=", 2);
+                if (pair.length == 2 && pair[0].trim().equalsIgnoreCase("charset")) {
+                    try {
+                        return Charset.forName(pair[1].trim().replace("\"", ""));
+                    } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+                        break;
+                    }
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private boolean isAllowed(String contentType) {
+        String mediaType = contentType.split(";", 2)[0].trim().toLowerCase(Locale.ROOT);
+        return mediaType.isEmpty() || allowedContentTypes.contains(mediaType);
+    }
+
+    @Override
+    public String metricsName() {
+        return "fetch";
+    }
+
+    @Override
+    public Map<String, Number> metrics() {
+        return Map.of(
+                "accepted", accepted.get(),
+                "skippedContentType", skippedContentType.get(),
+                "skippedTooLarge", skippedTooLarge.get(),
+                "bytesRead", bytesRead.get());
+    }
+}
@@ -0,0 +1,137 @@
+package searchengine.mapping;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Правила robots.txt для нашего User-Agent: берётся группа, чьё имя агента входит в наш
+ * User-Agent (самое длинное совпадение), иначе группа "*". Из правил Allow/Disallow
+ * применяется самое длинное совпавшее, при равной длине побеждает Allow; поддерживаются
+ * шаблоны * и $.
+ */
+public class RobotsRules {
+    private static final RobotsRules ALLOW_ALL = new RobotsRules(List.of(), -1, List.of());
+    private final List<Rule> rules;
+    private final double crawlDelaySeconds;
+    private final List<String> sitemaps;
+
+    private record Rule(String path, Pattern pattern, boolean allow) {
+    }
+
+    private RobotsRules(List<Rule> rules, double crawlDelaySeconds, List<String> sitemaps) {
+        this.rules = rules;
+        this.crawlDelaySeconds = crawlDelaySeconds;
+        this.sitemaps = sitemaps;
+    }
+
+    public static RobotsRules allowAll() {
+        return ALLOW_ALL;
+    }
+
+    public static RobotsRules parse(String robotsTxt, String userAgent) {
+        String agent = userAgent == null ? "" : userAgent.toLowerCase(Locale.ROOT);
+        List<String> sitemaps = new ArrayList<>();
+        Group best = null;
+        Group wildcard = null;
+        Group current = null;
+        boolean readingAgents = false;
+        for (String rawLine : robotsTxt.split("\r?\n|\r")) {
+            int comment = rawLine.indexOf('#');
+            String line = (comment >= 0 ? rawLine.substring(0, comment) : rawLine).trim();
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String field = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+            switch (field) {
+                case "user-agent" -> {
+                    if (!readingAgents) {
+                        current = new Group();
+                        readingAgents = true;
+                    }
+                    String name = value.toLowerCase(Locale.ROOT);
+                    if (name.equals("*")) {
+                        wildcard = current;
+                    } else if (!name.isEmpty() && agent.contains(name)
+                            && (best == null || name.length() > best.matchLength)) {
+                        current.matchLength = name.length();
+                        best = current;
+                    }
+                }
+                case "allow", "disallow" -> {
+                    readingAgents = false;
+                    if (current != null && !value.isEmpty()) {
+                        current.rules.add(new Rule(value, toPattern(value), field.equals("allow")));
+                    }
+                }
+                case "crawl-delay" -> {
+                    readingAgents = false;
+                    if (current != null) {
+                        try {
+                            current.crawlDelay = Double.parseDouble(value);
+                        } catch (NumberFormatException ignored) {
+                            // некорректная задержка игнорируется
+                        }
+                    }
+                }
+                case "sitemap" -> {
+                    if (!value.isEmpty()) {
+                        sitemaps.add(value);
+                    }
+                }
+                default -> readingAgents = false;
+            }
+        }
+        Group group = best != null ? best : wildcard;
+        return group == null ? new RobotsRules(List.of(), -1, sitemaps)
+                : new RobotsRules(group.rules, group.crawlDelay, sitemaps);
+    }
+
+    /**
+     * @param path путь страницы вместе со строкой запроса
+     */
+    public boolean isAllowed(String path) {
+        Rule matched = null;
+        for (Rule rule : rules) {
+            if (rule.pattern().matcher(path).lookingAt()
+                    && (matched == null || rule.path().length() > matched.path().length()
+                    || (rule.path().length() == matched.path().length() && rule.allow()))) {
+                matched = rule;
+            }
+        }
+        return matched == null || matched.allow();
+    }
+
+    /**
+     * @return задержка между запросами в секундах или -1, если Crawl-delay не задан
+     */
+    public double getCrawlDelaySeconds() {
+        return crawlDelaySeconds;
+    }
+
+    public List<String> getSitemaps() {
+        return sitemaps;
+    }
+
+    private static Pattern toPattern(String path) {
+        boolean anchored = path.endsWith("$");
+        String body = anchored ? path.substring(0, path.length() - 1) : path;
+        StringBuilder regex = new StringBuilder();
+        for (String part : body.split("\\*", -1)) {
+            if (regex.length() > 0) {
+                regex.append(".*");
+            }
+            regex.append(Pattern.quote(part));
+        }
+        return Pattern.compile(regex + (anchored ? "$" : ""));
+    }
+
+    private static final class Group {
+        private final List<Rule> rules = new ArrayList<>();
+        private double crawlDelay = -1;
+        private int matchLength;
+    }
+}
@@ -1,143 +1,451 @@
 package searchengine.mapping;
 
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.Connection;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
-import searchengine.config.AppConfigProperties;
+import searchengine.config.Website;
+import searchengine.dto.PageState;
+import searchengine.mapping.CrawlFrontier.FrontierEntry;
 import searchengine.model.Page;
 
-import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
 @Slf4j
-public class SiteCrawler extends RecursiveTask<List<Page>> {
+public class SiteCrawler {
     private final String headUrl;
     private final String another_url;
-    private final Set<String> visitedUrls;
-    private final AppConfigProperties connectionSetting;
+    private final PageFetcher fetcher;
     private static final Pattern FILE_PATTERN = Pattern
             .compile(".*\\.(webp|jpg|jpeg|png|gif|bmp|pdf|doc|docx|xls|xlsx|ppt|pptx|zip|rar|tar|gz|7z|mp3|wav|mp4|mkv|avi|mov|sql)$", Pattern.CASE_INSENSITIVE);
     private final AtomicBoolean indexingInProgress;
+    private final Consumer<Page> pageConsumer;
+    private final Executor parseExecutor;
+    private final CrawlFrontier frontier = new CrawlFrontier();
+    private final UrlCanonicalizer canonicalizer;
+    private final HostThrottle throttle;
+    private final KnownPages knownPages;
+    private final CrawlBudget budget;
+    private volatile String stopReason;
+    private static final int MAX_TITLE_LENGTH = 512;
+    private final AtomicInteger crawledPages = new AtomicInteger();
+    private final AtomicInteger unchangedPages = new AtomicInteger();
+    private final Map<String, FrontierEntry> unpersistedPages = new ConcurrentHashMap<>();
+    private static final int MAX_SITEMAP_FILES = 50;
+    private static final double MAX_CRAWL_DELAY_SECONDS = 60;
+    private CrawlSnapshot resumeFrom;
+    private String robotsUserAgent;
+    private RobotsRules robots = RobotsRules.allowAll();
+    private long checkpointIntervalMs;
+    private Consumer<CrawlSnapshot> checkpointSink = snapshot -> {
+    };
 
-    public SiteCrawler(String headUrl, String url, Set<String> visitedUrls, AppConfigProperties connectionSetting, AtomicBoolean indexingInProgress) {
-        this.headUrl = headUrl;
-        this.another_url = url;
-        this.visitedUrls = visitedUrls;
-        this.connectionSetting = connectionSetting;
+    /**
+     * @param hostThrottles общие для всех сайтов ограничители запросов, ключ - имя хоста
+     * @param parseExecutor пул, в котором разбираются ответы; сетевое ожидание его потоки не занимает
+     * @param knownPages    страницы прошлой индексации; неизменившиеся страницы в pageConsumer не передаются
+     */
+    public SiteCrawler(Website website, PageFetcher fetcher, Executor parseExecutor, AtomicBoolean indexingInProgress,
+                       Map<String, HostThrottle> hostThrottles, KnownPages knownPages, Consumer<Page> pageConsumer) {
+        this.headUrl = website.getUrl();
+        this.another_url = website.getUrl();
+        this.fetcher = fetcher;
+        this.parseExecutor = parseExecutor;
         this.indexingInProgress = indexingInProgress;
+        this.pageConsumer = pageConsumer;
+        this.knownPages = knownPages;
+        this.budget = new CrawlBudget(website);
+        this.canonicalizer = new UrlCanonicalizer(headUrl);
+        this.throttle = hostThrottles.computeIfAbsent(URI.create(headUrl).getHost(),
+                host -> new HostThrottle(website.getMaxConcurrentRequests() > 0 ? website.getMaxConcurrentRequests()
+                        : fetcher.defaultRequestsPerHost(), website.getRequestsPerSecond()));
     }
 
-    public SiteCrawler(String HeadUrl, String another_url, AppConfigProperties connectionSetting, AtomicBoolean indexingInProgress) {
+    public SiteCrawler(String HeadUrl, String another_url, PageFetcher fetcher) {
         this.headUrl = HeadUrl;
         this.another_url = another_url;
-        this.connectionSetting = connectionSetting;
-        this.visitedUrls = ConcurrentHashMap.newKeySet();
-        this.indexingInProgress = indexingInProgress;
+        this.fetcher = fetcher;
+        this.parseExecutor = Runnable::run;
+        this.indexingInProgress = new AtomicBoolean(true);
+        this.pageConsumer = page -> {
+        };
+        this.canonicalizer = new UrlCanonicalizer(HeadUrl);
+        this.throttle = new HostThrottle(1, 0);
+        this.knownPages = KnownPages.none();
+        this.budget = CrawlBudget.unlimited();
+    }
+
+    /**
+     * Продолжить прерванный обход из контрольной точки вместо обхода с главной страницы.
+     */
+    public void resumeFrom(CrawlSnapshot snapshot) {
+        this.resumeFrom = snapshot;
+    }
+
+    /**
+     * Раз в intervalMs передаёт снимок обхода в sink.
+     */
+    public void checkpointEvery(long intervalMs, Consumer<CrawlSnapshot> sink) {
+        this.checkpointIntervalMs = intervalMs;
+        this.checkpointSink = sink;
+    }
+
+    /**
+     * @return число ссылок, ожидающих обхода
+     */
+    public int getQueuedUrls() {
+        return frontier.size();
+    }
+
+    /**
+     * @return причина, по которой обход остановлен лимитом сайта, или null
+     */
+    public String getStopReason() {
+        return stopReason;
     }
 
-    @Override
-    public List<Page> compute() {
-        Page currentPage = new Page();
-        currentPage.setPath((another_url.substring(headUrl.length())));
-        List<Page> pages = new ArrayList<>();
+    /**
+     * Перед обходом загрузить robots.txt: запрещённые для userAgent пути не запрашиваются,
+     * Crawl-delay замедляет HostThrottle, а карты сайта из него дополняют очередь обхода.
+     */
+    public void respectRobots(String userAgent) {
+        this.robotsUserAgent = userAgent;
+    }
+
+    /**
+     * Сообщает, что страница записана в БД: до этого её ссылка остаётся в контрольной точке необработанной.
+     */
+    public void pagePersisted(Page page) {
+        unpersistedPages.remove(page.getPath());
+    }
+
+    /**
+     * Ссылки, которые после перезапуска нужно обойти заново: в очереди, в обработке
+     * и переданные в pageConsumer, но ещё не записанные в БД.
+     */
+    public CrawlSnapshot snapshot() {
+        CrawlSnapshot frontierSnapshot = frontier.snapshot();
+        Map<String, FrontierEntry> pending = new LinkedHashMap<>();
+        frontierSnapshot.pending().forEach(entry -> pending.put(entry.url(), entry));
+        unpersistedPages.values().forEach(entry -> pending.putIfAbsent(entry.url(), entry));
+        return new CrawlSnapshot(new ArrayList<>(pending.values()), frontierSnapshot.visited());
+    }
 
-        if (visitedUrls.contains(another_url)) {
-            return pages;
+    /**
+     * Раздаёт ссылки из очереди загрузчику, пока очередь не опустеет. Ответы разбираются
+     * в parseExecutor, разрешение HostThrottle возвращается только после того,
+     * как страница передана в pageConsumer, поэтому медленный потребитель
+     * ограничивает и число запросов в полёте.
+     */
+    public void crawl() {
+        long started = System.nanoTime();
+        long lastCheckpoint = System.currentTimeMillis();
+        try {
+            if (robotsUserAgent != null) {
+                loadRobots();
+            }
+            if (resumeFrom != null) {
+                restore(resumeFrom);
+            } else {
+                String root = canonicalizer.canonicalize(another_url);
+                if (robots.isAllowed(canonicalizer.pathOf(root))) {
+                    frontier.offer(root, 0);
+                } else {
+                    log.info("Главная страница сайта {} запрещена в robots.txt", headUrl);
+                }
+                seedFromSitemaps();
+            }
+            for (FrontierEntry entry = frontier.take(); entry != null; entry = frontier.take()) {
+                if (!indexingInProgress.get()) {
+                    frontier.giveBack(entry);
+                    frontier.close();
+                    break;
+                }
+                String exhausted = budget.charge();
+                if (exhausted != null) {
+                    log.info("Сайт {}: {}", headUrl, exhausted);
+                    stopReason = exhausted;
+                    frontier.giveBack(entry);
+                    frontier.close();
+                    break;
+                }
+                dispatch(entry);
+                if (checkpointIntervalMs > 0 && System.currentTimeMillis() - lastCheckpoint >= checkpointIntervalMs) {
+                    checkpointSink.accept(snapshot());
+                    lastCheckpoint = System.currentTimeMillis();
+                }
+            }
+            frontier.awaitIdle();
+        } catch (InterruptedException e) {
+            frontier.close();
+            Thread.currentThread().interrupt();
         }
-        if (!indexingInProgress.get()) {
-            return pages;
+        double seconds = Math.max(1, System.nanoTime() - started) / 1e9;
+        log.info("Обход сайта {} завершён: {} страниц ({} без изменений) за {} с, {} стр/с ({}), отброшено по глубине ссылок {}",
+                headUrl, crawledPages.get(), unchangedPages.get(), String.format("%.1f", seconds),
+                String.format("%.2f", crawledPages.get() / seconds), fetcher.getClass().getSimpleName(),
+                budget.getPrunedLinks());
+    }
+
+    private void loadRobots() throws InterruptedException {
+        String robotsTxt = fetchResource(canonicalizer.getOrigin() + "/robots.txt");
+        if (robotsTxt == null) {
+            return;
+        }
+        robots = RobotsRules.parse(robotsTxt, robotsUserAgent);
+        if (robots.getCrawlDelaySeconds() > 0) {
+            double delay = Math.min(robots.getCrawlDelaySeconds(), MAX_CRAWL_DELAY_SECONDS);
+            throttle.slowDownTo(delay);
+            log.info("Сайт {}: Crawl-delay {} с", headUrl, delay);
         }
-        visitedUrls.add(another_url);
+    }
 
-        List<SiteCrawler> crawler = new ArrayList<>();
+    /**
+     * Ссылки из карт сайта ставятся в очередь сразу за главной страницей (глубина 1),
+     * поэтому глубокие и ни на что не ссылающиеся страницы обходятся без поиска по ссылкам.
+     */
+    private void seedFromSitemaps() throws InterruptedException {
+        Deque<String> sitemaps = new ArrayDeque<>(robots.getSitemaps());
+        if (sitemaps.isEmpty()) {
+            sitemaps.add(canonicalizer.getOrigin() + "/sitemap.xml");
+        }
+        Set<String> loaded = new HashSet<>();
+        int seeded = 0;
+        while (!sitemaps.isEmpty() && loaded.size() < MAX_SITEMAP_FILES && indexingInProgress.get()) {
+            String sitemapUrl = canonicalizer.canonicalize(resolve(sitemaps.poll()));
+            if (sitemapUrl == null || !loaded.add(sitemapUrl)) {
+                continue;
+            }
+            String xml = fetchResource(sitemapUrl);
+            if (xml == null) {
+                continue;
+            }
+            SitemapParser.Sitemap sitemap = SitemapParser.parse(xml);
+            sitemaps.addAll(sitemap.sitemaps());
+            for (String loc : sitemap.pages()) {
+                String url = canonicalizer.canonicalize(loc);
+                if (url != null && shouldCrawl(url) && budget.allowsDepth(1) && frontier.offer(url, 1)) {
+                    seeded++;
+                }
+            }
+        }
+        if (!loaded.isEmpty()) {
+            log.info("Сайт {}: из карт сайта ({}) в очередь добавлено ссылок {}", headUrl, loaded.size(), seeded);
+        }
+    }
 
+    private String resolve(String url) {
         try {
-            fetchAndParsePage(currentPage, another_url);
-            pages.add(currentPage);
-
-            processLinks(currentPage.getContent(), visitedUrls, crawler);
+            return URI.create(canonicalizer.getOrigin() + "/").resolve(url.trim()).toString();
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
 
-            collectResults(crawler, pages);
+    /**
+     * @return тело ответа 200 или null, если файл получить не удалось
+     */
+    private String fetchResource(String url) throws InterruptedException {
+        throttle.acquire();
+        try {
+            FetchResult result = fetcher.fetchResource(url).join();
+            return result.code() == 200 && result.skipped() == null ? result.body() : null;
+        } catch (CompletionException e) {
+            log.debug("Не удалось загрузить {}: {}", url, errorMessage(e));
+            return null;
+        } finally {
+            throttle.release();
+        }
+    }
 
-        } catch (IOException e) {
-            currentPage.setCode(500);
-            currentPage.setContent(e.getMessage().isEmpty() ? "Индексация остановлена пользователем" : e.getMessage() + " url:" + another_url);
-            pages.add(currentPage);
-            if (!indexingInProgress.get()) {
-                return pages;
+    /**
+     * Страницы прошлой индексации, найденные до прерывания и уже не ожидающие обхода,
+     * считаются просмотренными, иначе после обхода они были бы удалены как исчезнувшие.
+     */
+    private void restore(CrawlSnapshot snapshot) {
+        frontier.restore(snapshot);
+        Set<String> pendingUrls = snapshot.pending().stream().map(FrontierEntry::url).collect(Collectors.toSet());
+        for (PageState page : knownPages.unseen()) {
+            String url = canonicalizer.getOrigin() + page.path();
+            if (!pendingUrls.contains(url) && frontier.wasFound(url)) {
+                knownPages.markSeen(page.path());
             }
         }
-        return pages;
+        log.info("Обход сайта {} продолжается с контрольной точки: в очереди {}, найдено ссылок {}", headUrl,
+                snapshot.pending().size(), snapshot.visited().length);
     }
 
+    private void dispatch(FrontierEntry entry) throws InterruptedException {
+        try {
+            throttle.acquire();
+        } catch (InterruptedException e) {
+            frontier.giveBack(entry);
+            throw e;
+        }
+        PageState known = knownPages.get(canonicalizer.pathOf(entry.url()));
+        CompletableFuture<FetchResult> response;
+        try {
+            response = known == null ? fetcher.fetch(entry.url())
+                    : fetcher.fetch(entry.url(), known.etag(), known.lastModified());
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        response.whenCompleteAsync((result, error) -> {
+            try {
+                handle(entry, result, error);
+            } catch (RuntimeException e) {
+                log.error("Ошибка при обработке страницы {}: {}", entry.url(), e.getMessage());
+            } finally {
+                throttle.release();
+                frontier.done(entry);
+            }
+        }, parseExecutor);
+    }
 
-    private void fetchAndParsePage(Page page, String anotherUrl) throws IOException {
+    /**
+     * Ответ разбирается один раз: заголовок, текст и ссылки сохраняются в Page.
+     * Страница, на которую сервер ответил 304 или вернул то же содержимое, что и в прошлый раз,
+     * повторно не индексируется: обход продолжается по её ссылкам. Если сохранённую страницу
+     * не удалось загрузить, остаётся её прошлая версия. Ответ, отклонённый ResponseGuard,
+     * не сохраняется, а прошлая версия такой страницы удаляется как исчезнувшая.
+     */
+    private void handle(FrontierEntry entry, FetchResult result, Throwable error) {
+        if (error == null && result.skipped() != null) {
+            log.debug("Ответ {} пропущен: {}", entry.url(), result.skipped());
+            return;
+        }
+        String path = canonicalizer.pathOf(entry.url());
+        PageState known = knownPages.markSeen(path);
+        Page currentPage = new Page(path);
+        if (error != null) {
+            if (known != null) {
+                log.info("Страница {} недоступна, остаётся прошлая версия: {}", entry.url(), errorMessage(error));
+                return;
+            }
+            currentPage.setCode(500);
+            currentPage.setContent(errorMessage(error) + " url:" + entry.url());
+            currentPage.setText(currentPage.getContent());
+            unpersistedPages.put(path, entry);
+            pageConsumer.accept(currentPage);
+            return;
+        }
+        crawledPages.incrementAndGet();
+        if (known != null && result.code() == 304) {
+            unchangedPages.incrementAndGet();
+            processLinks(knownPages.storedOutlinks(known), entry);
+            return;
+        }
+        byte[] body = result.body() == null ? new byte[0] : result.body().getBytes(StandardCharsets.UTF_8);
+        budget.addBytes(body.length);
+        String hash = contentHash(body);
+        PageAnalysis analysis = PageAnalysis.analyze(result.body(), entry.url(), canonicalizer);
+        if (known != null && hash.equals(known.contentHash())) {
+            unchangedPages.incrementAndGet();
+            processLinks(analysis.outlinks(), entry);
+            return;
+        }
+        if (known != null) {
+            currentPage.setId(known.id());
+        }
+        fillPage(currentPage, result, hash, analysis);
+        processLinks(analysis.outlinks(), entry);
+        unpersistedPages.put(path, entry);
+        pageConsumer.accept(currentPage);
+    }
 
-        Connection.Response response = Jsoup.connect(anotherUrl)
-                .userAgent(connectionSetting.getUserAgent())
-                .referrer(connectionSetting.getReferer())
-                .timeout(connectionSetting.getTimeout())
-                .ignoreContentType(true)
-                .execute();
+    private static void fillPage(Page page, FetchResult result, String hash, PageAnalysis analysis) {
+        page.setCode(result.code());
+        page.setContent(result.body());
+        page.setTitle(analysis.title().length() > MAX_TITLE_LENGTH ? analysis.title().substring(0, MAX_TITLE_LENGTH) : analysis.title());
+        page.setText(analysis.text());
+        page.setOutlinks(analysis.joinedOutlinks());
+        page.setContentHash(hash);
+        page.setEtag(result.etag() != null && result.etag().length() <= 255 ? result.etag() : null);
+        page.setLastModified(result.lastModified() != null && result.lastModified().length() <= 64 ? result.lastModified() : null);
+    }
 
-        page.setCode(response.statusCode());
-        page.setContent(response.body());
+    private static String contentHash(byte[] content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String errorMessage(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof UncheckedIOException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage() == null ? cause.toString() : cause.getMessage();
     }
 
-    private void processLinks(String content, Set<String> visitedUrls, List<SiteCrawler> crawlers) {
-        Document document = Jsoup.parse(content, another_url);
-        Elements links = document.select("a");
-        for (Element link : links) {
+    private void processLinks(List<String> links, FrontierEntry entry) {
+        for (String href : links) {
             if (!indexingInProgress.get()) {
                 break;
             }
-            String href = link.attr("abs:href").trim();
-            if (isValidLink(href)) {
-                try {
-                    SiteCrawler crawlerInstance = new SiteCrawler(headUrl, href, visitedUrls, connectionSetting, indexingInProgress);
-                    crawlerInstance.fork();
-                    crawlers.add(crawlerInstance);
-                } catch (Exception e) {
-                    log.error("Ошибка при обработке ссылки" + href + e);
-                }
+            if (shouldCrawl(href) && budget.allowsDepth(entry.depth() + 1)) {
+                frontier.offer(href, entry.depth() + 1);
             }
         }
     }
 
     public boolean isValidLink(String urls) {
-        return urls.startsWith(headUrl)
-                && !urls.contains("#")
-                && !visitedUrls.contains(urls)
-                && !FILE_PATTERN.matcher(urls).matches();
+        return !FILE_PATTERN.matcher(urls).matches();
     }
 
-    private void collectResults(List<SiteCrawler> crawlers, List<Page> pages) {
-        for (SiteCrawler crawler : crawlers) {
-            if (!indexingInProgress.get()) {
-                break;
-            }
-            pages.addAll(crawler.join());
-        }
+    private boolean shouldCrawl(String canonicalUrl) {
+        return isValidLink(canonicalUrl) && robots.isAllowed(canonicalizer.pathOf(canonicalUrl));
     }
 
 
     public Page computePage() {
-        Page currentPage = new Page(another_url.substring(headUrl.length()));
+        String url = canonicalizer.canonicalize(another_url);
+        if (url == null) {
+            log.info("Недействительный URL: {}", another_url);
+            Page invalidPage = new Page(another_url.substring(headUrl.length()));
+            invalidPage.setCode(500);
+            invalidPage.setContent("Недействительный URL: " + another_url);
+            invalidPage.setText(invalidPage.getContent());
+            return invalidPage;
+        }
+        Page currentPage = new Page(canonicalizer.pathOf(url));
         try {
-            fetchAndParsePage(currentPage, another_url);
-        } catch (IOException e) {
+            FetchResult result = fetcher.fetch(url).join();
+            if (result.skipped() != null) {
+                currentPage.setCode(result.code());
+                currentPage.setContent("Страница не загружена: " + result.skipped() + " url:" + url);
+                currentPage.setText(currentPage.getContent());
+                return currentPage;
+            }
+            fillPage(currentPage, result, contentHash(result.body() == null ? new byte[0]
+                    : result.body().getBytes(StandardCharsets.UTF_8)), PageAnalysis.analyze(result.body(), url, canonicalizer));
+        } catch (CompletionException e) {
             log.info("Недействительный URL: {}", another_url);
             currentPage.setCode(500);
-            currentPage.setContent(e.getMessage());
+            currentPage.setContent(errorMessage(e));
+            currentPage.setText(currentPage.getContent());
             return currentPage;
         }
         return currentPage;
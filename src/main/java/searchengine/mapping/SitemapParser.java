@@ -0,0 +1,34 @@
+package searchengine.mapping;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Разбор sitemap.xml: либо список страниц (urlset), либо список других карт (sitemapindex).
+ */
+public final class SitemapParser {
+
+    public record Sitemap(List<String> pages, List<String> sitemaps) {
+    }
+
+    private SitemapParser() {
+    }
+
+    public static Sitemap parse(String xml) {
+        Document document = Jsoup.parse(xml, "", Parser.xmlParser());
+        List<String> pages = new ArrayList<>();
+        List<String> sitemaps = new ArrayList<>();
+        for (Element loc : document.select("url > loc")) {
+            pages.add(loc.text().trim());
+        }
+        for (Element loc : document.select("sitemap > loc")) {
+            sitemaps.add(loc.text().trim());
+        }
+        return new Sitemap(pages, sitemaps);
+    }
+}
@@ -0,0 +1,6 @@
+package searchengine.mapping;
+
+public enum SkipReason {
+    CONTENT_TYPE,
+    TOO_LARGE
+}
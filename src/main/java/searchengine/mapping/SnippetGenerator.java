@@ -1,6 +1,5 @@
 package searchengine.mapping;
 
-import org.jsoup.Jsoup;
 import java.util.Arrays;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -8,8 +7,10 @@ import java.util.regex.Pattern;
 public final class SnippetGenerator {
     private static final int CONTEXT_RADIUS = 130;
 
-    public static String generatedSnippet(String query, String content) {
-        String text = Jsoup.parse(content).text();
+    /**
+     * @param text текст страницы, извлечённый при обходе (Page.text)
+     */
+    public static String generatedSnippet(String query, String text) {
         String[] words = query.split("\\s+");
 
         int phraseIndex = findPhraseFind(text,query);
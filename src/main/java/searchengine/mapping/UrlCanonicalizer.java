@@ -0,0 +1,108 @@
+package searchengine.mapping;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Приводит ссылки сайта к одному виду, чтобы /a, /a/, /a?utm_source=x, /a#top и
+ * http/https-варианты одной страницы считались одной ссылкой: схема и порт берутся
+ * от корня сайта, хост - в нижнем регистре, завершающий слэш, фрагмент и
+ * рекламные параметры отбрасываются, остальные параметры сортируются.
+ */
+public class UrlCanonicalizer {
+    private static final Set<String> TRACKING_PARAMETERS = Set.of("gclid", "fbclid", "yclid", "ysclid", "_openstat", "openstat");
+    private final String host;
+    private final int port;
+    private final String origin;
+
+    public UrlCanonicalizer(String rootUrl) {
+        URI root = URI.create(rootUrl.trim());
+        String scheme = root.getScheme().toLowerCase(Locale.ROOT);
+        this.host = root.getHost().toLowerCase(Locale.ROOT);
+        this.port = normalizePort(root.getPort());
+        this.origin = scheme + "://" + host + (port == -1 ? "" : ":" + port);
+    }
+
+    /**
+     * @return каноническая ссылка или null, если ссылка ведёт за пределы сайта или не является http(s)
+     */
+    public String canonicalize(String url) {
+        URI uri = toUri(url);
+        if (uri == null || uri.getScheme() == null || uri.getHost() == null) {
+            return null;
+        }
+        String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        if (!scheme.equals("http") && !scheme.equals("https")) {
+            return null;
+        }
+        if (!uri.getHost().equalsIgnoreCase(host) || normalizePort(uri.getPort()) != port) {
+            return null;
+        }
+        String query = normalizeQuery(uri.getRawQuery());
+        return origin + normalizePath(uri.getRawPath()) + (query.isEmpty() ? "" : "?" + query);
+    }
+
+    /**
+     * Путь страницы, который хранится в Page.path, для ссылки, полученной из {@link #canonicalize(String)}.
+     */
+    public String pathOf(String canonicalUrl) {
+        return canonicalUrl.substring(origin.length());
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    private static URI toUri(String url) {
+        try {
+            return new URI(url.trim().replace(" ", "%20")).normalize();
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    private static int normalizePort(int port) {
+        return port == 80 || port == 443 ? -1 : port;
+    }
+
+    private static String normalizePath(String rawPath) {
+        if (rawPath == null || rawPath.isEmpty()) {
+            return "/";
+        }
+        StringBuilder path = new StringBuilder(rawPath.length());
+        for (int i = 0; i < rawPath.length(); i++) {
+            char c = rawPath.charAt(i);
+            if (c != '/' || path.length() == 0 || path.charAt(path.length() - 1) != '/') {
+                path.append(c);
+            }
+        }
+        if (path.length() > 1 && path.charAt(path.length() - 1) == '/') {
+            path.setLength(path.length() - 1);
+        }
+        return path.toString();
+    }
+
+    private static String normalizeQuery(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return "";
+        }
+        List<String> parameters = new ArrayList<>();
+        for (String parameter : rawQuery.split("&")) {
+            if (parameter.isEmpty()) {
+                continue;
+            }
+            int separator = parameter.indexOf('=');
+            String name = (separator < 0 ? parameter : parameter.substring(0, separator)).toLowerCase(Locale.ROOT);
+            if (!name.startsWith("utm_") && !TRACKING_PARAMETERS.contains(name)) {
+                parameters.add(parameter);
+            }
+        }
+        Collections.sort(parameters);
+        return String.join("&", parameters);
+    }
+}
@@ -0,0 +1,141 @@
+package searchengine.mapping;
+
+import java.util.Arrays;
+
+/**
+ * Множество посещённых ссылок, в котором хранятся не строки, а их 64-битные отпечатки
+ * в открытой адресации по 64 независимым сегментам. Одна ссылка занимает 10-20 байт
+ * вместо сотни с лишним у строки в ConcurrentHashMap; вероятность совпадения
+ * отпечатков двух разных ссылок на миллионе адресов - порядка 10^-8.
+ */
+public class VisitedUrlSet {
+    private static final int SEGMENT_BITS = 6;
+    private static final int INITIAL_CAPACITY = 256;
+    private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+    public VisitedUrlSet() {
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Атомарно проверяет и добавляет ссылку.
+     *
+     * @return true, если ссылки ещё не было в множестве
+     */
+    public boolean add(String url) {
+        return add(fingerprint(url));
+    }
+
+    public boolean add(long fingerprint) {
+        long key = fingerprint == 0 ? 1 : fingerprint;
+        Segment segment = segments[(int) (key >>> (64 - SEGMENT_BITS))];
+        synchronized (segment) {
+            return segment.add(key);
+        }
+    }
+
+    public boolean contains(String url) {
+        return contains(fingerprint(url));
+    }
+
+    public boolean contains(long fingerprint) {
+        long key = fingerprint == 0 ? 1 : fingerprint;
+        Segment segment = segments[(int) (key >>> (64 - SEGMENT_BITS))];
+        synchronized (segment) {
+            return segment.contains(key);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Все отпечатки множества - для сохранения в контрольную точку обхода.
+     */
+    public long[] toArray() {
+        long[] result = new long[size()];
+        int i = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                for (long key : segment.table) {
+                    if (key != 0 && i < result.length) {
+                        result[i++] = key;
+                    }
+                }
+            }
+        }
+        return i == result.length ? result : Arrays.copyOf(result, i);
+    }
+
+    /**
+     * FNV-1a по символам строки с финальным перемешиванием из MurmurHash3.
+     */
+    public static long fingerprint(CharSequence url) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            hash ^= url.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static final class Segment {
+        private long[] table = new long[INITIAL_CAPACITY];
+        private int size;
+
+        boolean add(long key) {
+            int mask = table.length - 1;
+            int i = (int) key & mask;
+            while (table[i] != 0) {
+                if (table[i] == key) {
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            table[i] = key;
+            if (++size > table.length * 3 / 4) {
+                grow();
+            }
+            return true;
+        }
+
+        boolean contains(long key) {
+            int mask = table.length - 1;
+            for (int i = (int) key & mask; table[i] != 0; i = (i + 1) & mask) {
+                if (table[i] == key) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void grow() {
+            long[] old = table;
+            table = new long[old.length * 2];
+            int mask = table.length - 1;
+            for (long key : old) {
+                if (key != 0) {
+                    int i = (int) key & mask;
+                    while (table[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    table[i] = key;
+                }
+            }
+        }
+    }
+}
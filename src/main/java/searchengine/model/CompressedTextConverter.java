@@ -0,0 +1,93 @@
+package searchengine.model;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Хранит строку сжатой в формате функции MySQL COMPRESS(): 4 байта длины исходных данных
+ * (little-endian), затем поток zlib. Сжатие - самый быстрый уровень Deflater; такие данные
+ * можно прочитать в SQL через UNCOMPRESS(), а миграция существующих строк делается
+ * одним UPDATE ... SET content = COMPRESS(content).
+ */
+@Converter
+public class CompressedTextConverter implements AttributeConverter<String, byte[]> {
+
+    @Override
+    public byte[] convertToDatabaseColumn(String text) {
+        return compress(text);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] data) {
+        return decompress(data);
+    }
+
+    public static byte[] compress(String text) {
+        if (text == null) {
+            return null;
+        }
+        byte[] raw = text.getBytes(StandardCharsets.UTF_8);
+        if (raw.length == 0) {
+            return new byte[0];
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 64);
+            out.write(raw.length);
+            out.write(raw.length >>> 8);
+            out.write(raw.length >>> 16);
+            out.write(raw.length >>> 24);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException если данные не в формате COMPRESS()
+     */
+    public static String decompress(byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        if (data.length == 0) {
+            return "";
+        }
+        if (data.length < 4) {
+            throw new IllegalArgumentException("Повреждённое сжатое содержимое: " + data.length + " байт");
+        }
+        int length = (data[0] & 0xFF) | (data[1] & 0xFF) << 8 | (data[2] & 0xFF) << 16 | (data[3] & 0xFF) << 24;
+        byte[] raw = new byte[length];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, 4, data.length - 4);
+            int read = 0;
+            while (read < length && !inflater.finished()) {
+                int n = inflater.inflate(raw, read, length - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != length) {
+                throw new IllegalArgumentException("Повреждённое сжатое содержимое: распаковано " + read + " из " + length + " байт");
+            }
+            return new String(raw, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Повреждённое сжатое содержимое: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package searchengine.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "crawl_checkpoint")
+public class CrawlCheckpoint {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private int id;
+
+    @OneToOne
+    @JoinColumn(name = "site_id", nullable = false, unique = true)
+    private Site site;
+
+    @Column(columnDefinition = "LONGTEXT", nullable = false)
+    private String frontier;
+
+    @Column(columnDefinition = "LONGBLOB", nullable = false)
+    private byte[] visited;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -1,32 +0,0 @@
-package searchengine.model;
-
-import lombok.Getter;
-import lombok.NoArgsConstructor;
-import lombok.Setter;
-
-import javax.persistence.*;
-
-@Getter
-@Setter
-@NoArgsConstructor
-@Entity
-@Table(name = "indexes")
-public class Index {
-
-    @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    @Column(name = "index_id", nullable = false)
-    private Integer indexId;
-
-    @ManyToOne(fetch = FetchType.LAZY,  cascade = CascadeType.ALL)
-    @JoinColumn(name = "page_id")
-    private Page page;
-
-    @ManyToOne(fetch = FetchType.LAZY,  cascade = CascadeType.ALL)
-    @JoinColumn(name = "lemma_id")
-    private Lemma lemma;
-
-    @Column(name = "runk", nullable = false)
-    private Float rank;
-
-}
@@ -4,7 +4,6 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import javax.persistence.*;
-import java.util.List;
 import java.util.Objects;
 
 
@@ -12,7 +11,7 @@ import java.util.Objects;
 @Setter
 @Getter
 @NoArgsConstructor
-@Table(name = "lemma")
+@Table(name = "lemma", uniqueConstraints = @UniqueConstraint(name = "lemma_site_lemma", columnNames = {"site_id", "lemma"}))
 
 public class Lemma {
     @Id
@@ -30,9 +29,6 @@ public class Lemma {
     @JoinColumn(name = "site_id")
    // @Column(nullable = false)
     private Site site;
-
-@OneToMany(mappedBy = "lemma", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
-private List<Index> indexList;
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
@@ -3,14 +3,13 @@ package searchengine.model;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
-import java.util.List;
 import javax.persistence.*;
 
 @Entity
 @Getter
 @Setter
 //@Table(name = "page", indexes = {@Index(name = "path_index", columnList = "path")})
-@Table(name = "page")
+@Table(name = "page", uniqueConstraints = @UniqueConstraint(name = "page_site_path", columnNames = {"site_id", "path"}))
 @NoArgsConstructor
 
 public class Page {
@@ -18,20 +17,46 @@ public class Page {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private int id;
 
-    @Column(columnDefinition = "VARCHAR(255)", nullable = false)
+    @Column(columnDefinition = "VARCHAR(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin", nullable = false)
     private String path;
 
     private int code;
 
-    @Column(columnDefinition = "MEDIUMTEXT CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci")
+    /**
+     * HTML страницы, в БД хранится сжатым; в режиме storage-settings.page-content: TEXT_ONLY - null.
+     */
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(columnDefinition = "MEDIUMBLOB")
     private String content;
 
+    @Column(columnDefinition = "VARCHAR(512) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci")
+    private String title;
+
+    @Column(columnDefinition = "MEDIUMTEXT CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci")
+    private String text;
+
+    @Column(columnDefinition = "MEDIUMTEXT")
+    private String outlinks;
+
+    @Column(columnDefinition = "VARCHAR(255)")
+    private String etag;
+
+    @Column(name = "last_modified", columnDefinition = "VARCHAR(64)")
+    private String lastModified;
+
+    @Column(name = "content_hash", columnDefinition = "CHAR(64)")
+    private String contentHash;
+
     @ManyToOne()
     @JoinColumn(name = "site_id", nullable = false)
     private Site site;
 
-    @OneToMany(mappedBy = "page", cascade = CascadeType.ALL,fetch = FetchType.LAZY)
-    private List<Index> indexList;
+    /**
+     * id лемм страницы по возрастанию в формате {@link searchengine.mapping.PositionList#encode()};
+     * по ним страница убирается из списков страниц лемм при переиндексации и удалении.
+     */
+    @Column(name = "lemma_ids", columnDefinition = "BLOB")
+    private byte[] lemmaIds;
 
     public Page(String path) {
         this.path = path;
@@ -36,6 +36,13 @@ public class Site {
     @Column(columnDefinition = "VARCHAR(255)", nullable = false)
     private String name;
 
+    /**
+     * Теневая копия сайта, которая строится полной переиндексацией и не видна поиску,
+     * пока не подменит действующую.
+     */
+    @Column(columnDefinition = "BIT(1) NOT NULL DEFAULT 0")
+    private boolean staging;
+
     @OneToMany(mappedBy = "site", cascade = CascadeType.ALL)
     private List<Page> pageList = new ArrayList<>();
 
@@ -0,0 +1,22 @@
+package searchengine.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.model.CrawlCheckpoint;
+
+import java.util.Optional;
+
+@Repository
+public interface CrawlCheckpointRepository extends JpaRepository<CrawlCheckpoint, Integer> {
+    @Query("SELECT c FROM CrawlCheckpoint c WHERE c.site.id = :id")
+    Optional<CrawlCheckpoint> findBySiteId(@Param("id") Integer id);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM CrawlCheckpoint c WHERE c.site.id = :id")
+    void deleteBySiteId(@Param("id") Integer id);
+}
@@ -5,19 +5,16 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import searchengine.model.Lemma;
-import searchengine.model.Site;
 
 import java.util.List;
 
 @Repository
 public interface LemmaRepository extends JpaRepository<Lemma,Integer> {
 
-    @Query("SELECT l FROM Lemma l WHERE l.lemma = :lemma")
-    List<Lemma> findByLemma(@Param("lemma") String lemma);
-    @Query("SELECT l FROM Lemma l WHERE l.lemma = :lemma and l.site = :site")
-    List<Lemma> findByLemmaToSiteId(@Param("lemma") String lemma, @Param("site") Site site);
-
     @Query("SELECT count(l) FROM Lemma l WHERE l.site.id = :id")
     int countLemmaToSite(@Param("id") Integer id);
 
+    @Query("SELECT l FROM Lemma l WHERE l.site.id = :id")
+    List<Lemma> findAllBySite(@Param("id") Integer id);
+
 }
\ No newline at end of file
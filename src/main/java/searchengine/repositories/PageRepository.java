@@ -2,11 +2,18 @@ package searchengine.repositories;
 
 
         import org.springframework.data.jpa.repository.JpaRepository;
+        import org.springframework.data.jpa.repository.Modifying;
         import org.springframework.data.jpa.repository.Query;
         import org.springframework.data.repository.query.Param;
         import org.springframework.stereotype.Repository;
+        import org.springframework.transaction.annotation.Transactional;
+        import searchengine.dto.PageState;
+        import searchengine.dto.PageSummary;
         import searchengine.model.Page;
 
+        import java.util.Collection;
+        import java.util.List;
+
 @Repository
 public interface PageRepository extends JpaRepository<Page,Integer> {
   //  Page findByPath(String url);
@@ -14,4 +21,14 @@ public interface PageRepository extends JpaRepository<Page,Integer> {
     void deletePageByPath(String substring);
     @Query("SELECT count(p) FROM Page p WHERE p.site.id = :id")
     int countPagesToSite(@Param("id") Integer id);
+    @Query("SELECT new searchengine.dto.PageState(p.id, p.path, p.etag, p.lastModified, p.contentHash) FROM Page p WHERE p.site.id = :id")
+    List<PageState> findPageStatesBySite(@Param("id") Integer id);
+    @Query("SELECT new searchengine.dto.PageSummary(p.id, p.site.id, p.path, p.title, p.text) FROM Page p WHERE p.id IN :ids")
+    List<PageSummary> findSummariesByIdIn(@Param("ids") Collection<Integer> ids);
+    @Query("SELECT p.outlinks FROM Page p WHERE p.id = :id")
+    String findOutlinksById(@Param("id") Integer id);
+    @Transactional
+    @Modifying
+    @Query("UPDATE Page p SET p.etag = NULL, p.lastModified = NULL, p.contentHash = NULL WHERE p.site.id = :id AND p.text IS NULL")
+    int resetUnanalyzedPages(@Param("id") Integer id);
 }
\ No newline at end of file
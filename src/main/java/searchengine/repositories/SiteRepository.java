@@ -2,12 +2,21 @@ package searchengine.repositories;
 
 
 import org.springframework.data.jpa.repository.JpaRepository;
-        import org.springframework.stereotype.Repository;
-        import searchengine.model.Site;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import searchengine.model.Site;
+
+import java.util.List;
 
 @Repository
 public interface SiteRepository extends JpaRepository<Site, Integer> {
-    Site findByUrl(String url);
+    @Query("SELECT s FROM Site s WHERE s.url = :url AND s.staging = false")
+    Site findByUrl(@Param("url") String url);
+    @Query("SELECT s FROM Site s WHERE s.url = :url AND s.staging = true")
+    List<Site> findStagingByUrl(@Param("url") String url);
+    @Query("SELECT s FROM Site s WHERE s.staging = false")
+    List<Site> findLive();
     boolean existsByUrl (String url);
 
-}
\ No newline at end of file
+}
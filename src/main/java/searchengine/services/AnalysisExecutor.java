@@ -0,0 +1,102 @@
+package searchengine.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.PipelineSettings;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Общий для всех сайтов пул лемматизации. Размер пула и очереди задаются отдельно от
+ * потоков обхода (pipeline-settings.analysis-threads, analysis-queue-capacity): разбор
+ * текста упирается в процессор, а загрузка страниц - в сеть. Когда очередь заполнена,
+ * поток обходчика ждёт свободного места, а не выполняет задачу сам.
+ */
+@Slf4j
+@Component
+class AnalysisExecutor implements MetricsSource, AutoCloseable {
+    private final ThreadPoolExecutor executor;
+    private final int queueCapacity;
+    private final long startedAt = System.nanoTime();
+    private final LongAdder busyNanos = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder callerWaits = new LongAdder();
+
+    AnalysisExecutor(PipelineSettings settings) {
+        int threads = settings.getAnalysisThreads();
+        this.queueCapacity = settings.getAnalysisQueueCapacity();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> {
+                    Thread thread = new Thread(task, "analysis-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                this::waitForSpace);
+        log.info("Пул лемматизации: потоков {}, очередь {}", threads, queueCapacity);
+    }
+
+    /**
+     * @throws RejectedExecutionException если пул остановлен или ожидание места в очереди прервано
+     */
+    void execute(Runnable task) {
+        executor.execute(() -> {
+            long start = System.nanoTime();
+            try {
+                task.run();
+                completed.increment();
+            } catch (RuntimeException e) {
+                failed.increment();
+                throw e;
+            } finally {
+                busyNanos.add(System.nanoTime() - start);
+            }
+        });
+    }
+
+    private void waitForSpace(Runnable task, ThreadPoolExecutor pool) {
+        if (pool.isShutdown()) {
+            throw new RejectedExecutionException("Пул лемматизации остановлен");
+        }
+        callerWaits.increment();
+        try {
+            pool.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Ожидание места в очереди лемматизации прервано");
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String metricsName() {
+        return "analysis";
+    }
+
+    @Override
+    public Map<String, Number> metrics() {
+        int threads = executor.getMaximumPoolSize();
+        long elapsed = System.nanoTime() - startedAt;
+        return Map.of(
+                "threads", threads,
+                "activeThreads", executor.getActiveCount(),
+                "queueDepth", executor.getQueue().size(),
+                "queueCapacity", queueCapacity,
+                "completedTasks", completed.sum(),
+                "failedTasks", failed.sum(),
+                "callerWaits", callerWaits.sum(),
+                "utilization", elapsed <= 0 ? 0.0 : (double) busyNanos.sum() / ((double) elapsed * threads));
+    }
+}
@@ -0,0 +1,58 @@
+package searchengine.services;
+
+import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
+import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import org.springframework.stereotype.Component;
+import searchengine.config.MorphologyLanguage;
+import searchengine.config.MorphologySettings;
+import searchengine.services.TextTokenizer.Script;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Выбирает анализатор по алфавиту слова: кириллица - русская морфология, латиница -
+ * английская. Список языков задаётся в morphology-settings.languages; слова на алфавите
+ * без анализатора и слова из смеси алфавитов не индексируются.
+ */
+@Component
+class AnalyzerChain implements MetricsSource {
+    private final Map<Script, MorphologyAnalyzer> analyzers = new EnumMap<>(Script.class);
+
+    AnalyzerChain(MorphologySettings settings) {
+        for (MorphologyLanguage language : settings.getLanguages()) {
+            MorphologyAnalyzer analyzer = create(language);
+            analyzers.put(analyzer.getScript(), analyzer);
+        }
+    }
+
+    private static MorphologyAnalyzer create(MorphologyLanguage language) {
+        return switch (language) {
+            case RUSSIAN -> new MorphologyAnalyzer("russian", Script.CYRILLIC, RussianLuceneMorphology::new,
+                    Set.of("МЕЖД", "ПРЕДЛ", "СОЮЗ", "ЧАСТ"));
+            case ENGLISH -> new MorphologyAnalyzer("english", Script.LATIN, EnglishLuceneMorphology::new,
+                    Set.of("ARTICLE", "CONJ", "PREP", "PART", "INT"));
+        };
+    }
+
+    /**
+     * @return анализатор для слова на этом алфавите или null
+     */
+    MorphologyAnalyzer forScript(Script script) {
+        return analyzers.get(script);
+    }
+
+    @Override
+    public String metricsName() {
+        return "analyzers";
+    }
+
+    @Override
+    public Map<String, Number> metrics() {
+        Map<String, Number> metrics = new HashMap<>();
+        analyzers.values().forEach(analyzer -> metrics.putAll(analyzer.metrics()));
+        return metrics;
+    }
+}
@@ -0,0 +1,219 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.config.PageContentMode;
+import searchengine.config.StorageSettings;
+import searchengine.dto.PageLemmas;
+import searchengine.mapping.PositionList;
+import searchengine.mapping.PostingBlock;
+import searchengine.model.CompressedTextConverter;
+import searchengine.model.Lemma;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.repositories.SiteRepository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.*;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BatchPageInsert {
+    private static final List<String> PAGE_COLUMNS = List.of("path", "code", "content", "title", "text", "outlinks",
+            "etag", "last_modified", "content_hash", "site_id", "lemma_ids");
+    private static final List<String> LEMMA_COLUMNS = List.of("lemma", "frequency", "site_id");
+    private final SiteRepository siteRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final BulkLoader bulkLoader;
+    private final PostingStore postingStore;
+    private final StorageSettings storageSettings;
+    private static final int DELETE_CHUNK = 500;
+
+    /**
+     * Сохраняет пачку страниц вместе с их индексами в одной транзакции: при ошибке в БД не
+     * остаётся ничего из пачки, а уже зафиксированные пачки сайта не теряются. Частоты лемм
+     * увеличиваются на число страниц, накопленное словарём при лемматизации, страницы пачки
+     * добавляются в списки страниц лемм блоками {@link PostingStore}. Страницы с заполненным
+     * id - изменившиеся страницы прошлой индексации: они убираются из списков своих прежних
+     * лемм, а частоты этих лемм уменьшаются.
+     */
+    @Transactional
+    public void insertBatch(Site site, List<PageLemmas> batch, LemmaDictionary dictionary) {
+        List<Integer> changedPages = batch.stream().map(PageLemmas::page)
+                .filter(p -> p.getId() != 0).map(Page::getId).toList();
+        removePostings(changedPages);
+
+        BitSet batchLemmas = new BitSet(dictionary.size());
+        batch.forEach(pageLemmas -> Arrays.stream(pageLemmas.lemmaIds()).forEach(batchLemmas::set));
+        Map<Lemma, Integer> pagesPerLemma = new LinkedHashMap<>();
+        for (int id = batchLemmas.nextSetBit(0); id >= 0; id = batchLemmas.nextSetBit(id + 1)) {
+            Lemma lemma = dictionary.lemma(id);
+            int unsavedPages = dictionary.takeUnsavedPages(id);
+            if (unsavedPages > 0 || lemma.getId() == null) {
+                pagesPerLemma.put(lemma, unsavedPages);
+            }
+        }
+        upsertLemmas(site, pagesPerLemma);
+
+        List<Page> pages = batch.stream().map(PageLemmas::page).toList();
+        for (PageLemmas pageLemmas : batch) {
+            pageLemmas.page().setSite(site);
+            pageLemmas.page().setLemmaIds(lemmaIds(pageLemmas, dictionary));
+        }
+        updatePages(pages.stream().filter(p -> p.getId() != 0).toList());
+        bulkLoader.insert("page", PAGE_COLUMNS, pages.stream().filter(p -> p.getId() == 0).toList(),
+                this::bindPage, BatchPageInsert::pageBytes, Page::setId);
+
+        Map<Integer, List<PostingBlock.Entry>> postings = new HashMap<>();
+        for (PageLemmas pageLemmas : batch) {
+            for (int i = 0; i < pageLemmas.lemmaIds().length; i++) {
+                PositionList positions = pageLemmas.positions()[i];
+                postings.computeIfAbsent(dictionary.lemma(pageLemmas.lemmaIds()[i]).getId(), id -> new ArrayList<>())
+                        .add(new PostingBlock.Entry(pageLemmas.page().getId(), positions.size(), positions.encode()));
+            }
+        }
+        postingStore.append(site.getId(), postings);
+
+        site.setStatusTime(LocalDateTime.now());
+        siteRepository.save(site);
+    }
+
+    /**
+     * id лемм страницы в БД по возрастанию в формате {@link PositionList#encode()}.
+     */
+    private static byte[] lemmaIds(PageLemmas pageLemmas, LemmaDictionary dictionary) {
+        int[] ids = Arrays.stream(pageLemmas.lemmaIds()).map(id -> dictionary.lemma(id).getId()).sorted().toArray();
+        PositionList encoded = new PositionList();
+        Arrays.stream(ids).forEach(encoded::add);
+        return encoded.encode();
+    }
+
+    /**
+     * Увеличивает частоты лемм сайта, создавая отсутствующие, через INSERT ... ON DUPLICATE KEY
+     * UPDATE по уникальному ключу (site_id, lemma). Леммам без id проставляется id из БД.
+     */
+    public void upsertLemmas(Site site, Map<Lemma, Integer> increments) {
+        bulkLoader.upsert("lemma", LEMMA_COLUMNS, new ArrayList<>(increments.entrySet()), (ps, first, entry) -> {
+            ps.setString(first, entry.getKey().getLemma());
+            ps.setInt(first + 1, entry.getValue());
+            ps.setInt(first + 2, site.getId());
+        }, entry -> 64 + 2L * entry.getKey().getLemma().length(), "frequency = frequency + VALUES(frequency)");
+
+        Map<String, Lemma> withoutId = new HashMap<>();
+        increments.keySet().stream().filter(lemma -> lemma.getId() == null)
+                .forEach(lemma -> withoutId.put(lemma.getLemma(), lemma));
+        List<String> texts = new ArrayList<>(withoutId.keySet());
+        for (int from = 0; from < texts.size(); from += DELETE_CHUNK) {
+            List<String> chunk = texts.subList(from, Math.min(texts.size(), from + DELETE_CHUNK));
+            List<Object> args = new ArrayList<>(chunk.size() + 1);
+            args.add(site.getId());
+            args.addAll(chunk);
+            jdbcTemplate.query("SELECT id, lemma FROM lemma WHERE site_id = ? AND lemma IN (" + placeholders(chunk.size()) + ")",
+                    rs -> {
+                        Lemma lemma = withoutId.get(rs.getString(2));
+                        if (lemma != null) {
+                            lemma.setId(rs.getInt(1));
+                        }
+                    }, args.toArray());
+        }
+    }
+
+    /**
+     * Удаляет страницы, которых больше нет на сайте, вместе с их индексами.
+     */
+    @Transactional
+    public void deletePages(List<Integer> pageIds) {
+        for (int from = 0; from < pageIds.size(); from += DELETE_CHUNK) {
+            List<Integer> chunk = pageIds.subList(from, Math.min(pageIds.size(), from + DELETE_CHUNK));
+            removePostings(chunk);
+            jdbcTemplate.update("DELETE FROM page WHERE id IN (" + placeholders(chunk.size()) + ")", chunk.toArray());
+        }
+    }
+
+    /**
+     * Удаляет леммы сайта, которые после переиндексации не встречаются ни на одной странице.
+     */
+    public int deleteUnusedLemmas(Site site) {
+        return jdbcTemplate.update("DELETE FROM lemma WHERE site_id = ? AND frequency <= 0", site.getId());
+    }
+
+    /**
+     * Убирает страницы из списков страниц их лемм по сохранённым в странице id лемм
+     * и уменьшает частоты этих лемм.
+     */
+    private void removePostings(List<Integer> pageIds) {
+        if (pageIds.isEmpty()) {
+            return;
+        }
+        Map<Integer, Integer> pagesPerLemma = new HashMap<>();
+        jdbcTemplate.query("SELECT lemma_ids FROM page WHERE id IN (" + placeholders(pageIds.size()) + ")", rs -> {
+            for (int lemmaId : PositionList.decode(rs.getBytes(1))) {
+                pagesPerLemma.merge(lemmaId, 1, Integer::sum);
+            }
+        }, pageIds.toArray());
+        jdbcTemplate.batchUpdate("UPDATE lemma SET frequency = frequency - ? WHERE id = ?", pagesPerLemma.entrySet().stream()
+                .map(entry -> new Object[]{entry.getValue(), entry.getKey()}).toList());
+        postingStore.remove(pagesPerLemma.keySet(), new HashSet<>(pageIds));
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    /**
+     * Изменившиеся страницы прошлой индексации: строка страницы обновляется, id сохраняется.
+     */
+    private void updatePages(List<Page> pages) {
+        if (pages.isEmpty()) {
+            return;
+        }
+        String sql = "UPDATE page SET " + String.join(" = ?, ", PAGE_COLUMNS) + " = ? WHERE id = ?";
+        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                bindPage(ps, 1, pages.get(i));
+                ps.setInt(PAGE_COLUMNS.size() + 1, pages.get(i).getId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return pages.size();
+            }
+        });
+    }
+
+    private void bindPage(PreparedStatement ps, int first, Page page) throws SQLException {
+        ps.setString(first, page.getPath());
+        ps.setInt(first + 1, page.getCode());
+        ps.setBytes(first + 2, storageSettings.getPageContent() == PageContentMode.TEXT_ONLY ? null
+                : CompressedTextConverter.compress(page.getContent()));
+        ps.setString(first + 3, page.getTitle());
+        ps.setString(first + 4, page.getText());
+        ps.setString(first + 5, page.getOutlinks());
+        ps.setString(first + 6, page.getEtag());
+        ps.setString(first + 7, page.getLastModified());
+        ps.setString(first + 8, page.getContentHash());
+        ps.setInt(first + 9, page.getSite().getId());
+        ps.setBytes(first + 10, page.getLemmaIds());
+    }
+
+    private static long pageBytes(Page page) {
+        return 256 + 2L * (length(page.getPath()) + length(page.getContent()) + length(page.getTitle())
+                + length(page.getText()) + length(page.getOutlinks())) + length(page.getLemmaIds());
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private static int length(byte[] value) {
+        return value == null ? 0 : value.length;
+    }
+}
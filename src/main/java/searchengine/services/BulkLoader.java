@@ -0,0 +1,164 @@
+package searchengine.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import searchengine.config.BulkLoadSettings;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Загрузка строк многострочными INSERT ... VALUES (...), (...) через JDBC. Для сущностей
+ * с GenerationType.IDENTITY Hibernate отправляет по одному INSERT на строку; здесь строки
+ * делятся на пачки по bulk-load-settings.chunk-rows строк и не больше chunk-bytes байт,
+ * а сгенерированные ключи читаются обратно в порядке строк.
+ */
+@Slf4j
+@Component
+class BulkLoader implements MetricsSource {
+    private final JdbcTemplate jdbcTemplate;
+    private final int chunkRows;
+    private final long chunkBytes;
+    private final Map<String, TableStats> stats = new ConcurrentHashMap<>();
+
+    @FunctionalInterface
+    interface RowBinder<T> {
+        /**
+         * @param first номер первого параметра строки в запросе
+         */
+        void bind(PreparedStatement statement, int first, T row) throws SQLException;
+    }
+
+    @FunctionalInterface
+    interface KeyConsumer<T> {
+        void accept(T row, int key);
+    }
+
+    private static final class TableStats {
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder chunks = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private volatile long lastChunkRows;
+        private volatile long lastChunkNanos;
+    }
+
+    BulkLoader(JdbcTemplate jdbcTemplate, BulkLoadSettings settings) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkRows = Math.max(1, settings.getChunkRows());
+        this.chunkBytes = settings.getChunkBytes();
+    }
+
+    /**
+     * Вставляет строки пачками.
+     *
+     * @param rowBytes приблизительный размер строки в запросе
+     * @param keys     получает сгенерированный ключ каждой строки; null, если ключи не нужны
+     */
+    <T> void insert(String table, List<String> columns, List<T> rows, RowBinder<T> binder,
+                    ToLongFunction<T> rowBytes, KeyConsumer<T> keys) {
+        load(table, columns, rows, binder, rowBytes, keys, "");
+    }
+
+    /**
+     * Вставляет строки пачками, а строки, нарушающие уникальный ключ, обновляет.
+     *
+     * @param onDuplicate присваивания для ON DUPLICATE KEY UPDATE
+     */
+    <T> void upsert(String table, List<String> columns, List<T> rows, RowBinder<T> binder,
+                    ToLongFunction<T> rowBytes, String onDuplicate) {
+        load(table, columns, rows, binder, rowBytes, null, " ON DUPLICATE KEY UPDATE " + onDuplicate);
+    }
+
+    private <T> void load(String table, List<String> columns, List<T> rows, RowBinder<T> binder,
+                          ToLongFunction<T> rowBytes, KeyConsumer<T> keys, String suffix) {
+        int from = 0;
+        while (from < rows.size()) {
+            int to = from;
+            long bytes = 0;
+            while (to < rows.size() && to - from < chunkRows) {
+                bytes += rowBytes.applyAsLong(rows.get(to));
+                if (to > from && bytes > chunkBytes) {
+                    break;
+                }
+                to++;
+            }
+            insertChunk(table, columns, rows.subList(from, to), binder, keys, suffix);
+            from = to;
+        }
+    }
+
+    private <T> void insertChunk(String table, List<String> columns, List<T> chunk,
+                                 RowBinder<T> binder, KeyConsumer<T> keys, String suffix) {
+        String row = "(" + String.join(",", Collections.nCopies(columns.size(), "?")) + ")";
+        String sql = "INSERT INTO " + table + " (" + String.join(",", columns) + ") VALUES "
+                + String.join(",", Collections.nCopies(chunk.size(), row)) + suffix;
+        long start = System.nanoTime();
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement statement = keys == null ? connection.prepareStatement(sql)
+                    : connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    binder.bind(statement, i * columns.size() + 1, chunk.get(i));
+                }
+                statement.executeUpdate();
+                if (keys != null) {
+                    readKeys(statement, chunk, keys);
+                }
+            }
+            return null;
+        });
+        long elapsed = System.nanoTime() - start;
+        TableStats tableStats = stats.computeIfAbsent(table, t -> new TableStats());
+        tableStats.rows.add(chunk.size());
+        tableStats.chunks.increment();
+        tableStats.nanos.add(elapsed);
+        tableStats.lastChunkRows = chunk.size();
+        tableStats.lastChunkNanos = elapsed;
+        long millis = TimeUnit.NANOSECONDS.toMillis(elapsed);
+        log.debug("Таблица {}: вставлено строк {} за {} мс ({} строк/с)", table, chunk.size(), millis,
+                chunk.size() * 1_000_000_000L / Math.max(1, elapsed));
+    }
+
+    private static <T> void readKeys(PreparedStatement statement, List<T> chunk, KeyConsumer<T> keys) throws SQLException {
+        try (ResultSet generated = statement.getGeneratedKeys()) {
+            int i = 0;
+            while (generated.next() && i < chunk.size()) {
+                keys.accept(chunk.get(i++), generated.getInt(1));
+            }
+            if (i != chunk.size()) {
+                throw new SQLException("Получено ключей " + i + " из " + chunk.size());
+            }
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "bulkLoad";
+    }
+
+    @Override
+    public Map<String, Number> metrics() {
+        Map<String, Number> metrics = new HashMap<>();
+        stats.forEach((table, tableStats) -> {
+            long nanos = tableStats.nanos.sum();
+            metrics.put(table + ".rows", tableStats.rows.sum());
+            metrics.put(table + ".chunks", tableStats.chunks.sum());
+            metrics.put(table + ".millis", TimeUnit.NANOSECONDS.toMillis(nanos));
+            metrics.put(table + ".rowsPerSecond", nanos == 0 ? 0.0 : tableStats.rows.sum() * 1e9 / nanos);
+            metrics.put(table + ".lastChunkRows", tableStats.lastChunkRows);
+            metrics.put(table + ".lastChunkMillis", TimeUnit.NANOSECONDS.toMillis(tableStats.lastChunkNanos));
+        });
+        return metrics;
+    }
+}
@@ -0,0 +1,85 @@
+package searchengine.services;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счётчики пулов соединений: сколько раз и как долго потоки ждали соединение,
+ * сколько ожиданий закончилось таймаутом и текущая занятость пула.
+ */
+@Component
+public class ConnectionPoolMetrics implements MetricsSource, MetricsTrackerFactory {
+    private final Map<String, PoolTracker> pools = new ConcurrentHashMap<>();
+
+    private static final class PoolTracker implements IMetricsTracker {
+        private final PoolStats poolStats;
+        private final LongAdder acquisitions = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder timeouts = new LongAdder();
+        private final LongAdder usageMillis = new LongAdder();
+
+        private PoolTracker(PoolStats poolStats) {
+            this.poolStats = poolStats;
+        }
+
+        @Override
+        public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+            acquisitions.increment();
+            waitNanos.add(elapsedAcquiredNanos);
+            maxWaitNanos.accumulate(elapsedAcquiredNanos);
+        }
+
+        @Override
+        public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+            usageMillis.add(elapsedBorrowedMillis);
+        }
+
+        @Override
+        public void recordConnectionTimeout() {
+            timeouts.increment();
+        }
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        PoolTracker tracker = new PoolTracker(poolStats);
+        pools.put(poolName, tracker);
+        return tracker;
+    }
+
+    @Override
+    public String metricsName() {
+        return "connectionPools";
+    }
+
+    @Override
+    public Map<String, Number> metrics() {
+        Map<String, Number> metrics = new HashMap<>();
+        pools.forEach((pool, tracker) -> {
+            long acquisitions = tracker.acquisitions.sum();
+            long waitNanos = tracker.waitNanos.sum();
+            metrics.put(pool + ".acquisitions", acquisitions);
+            metrics.put(pool + ".waitMillis", TimeUnit.NANOSECONDS.toMillis(waitNanos));
+            metrics.put(pool + ".avgWaitMillis", acquisitions == 0 ? 0.0 : waitNanos / 1e6 / acquisitions);
+            metrics.put(pool + ".maxWaitMillis", TimeUnit.NANOSECONDS.toMillis(tracker.maxWaitNanos.get()));
+            metrics.put(pool + ".timeouts", tracker.timeouts.sum());
+            metrics.put(pool + ".avgUsageMillis", acquisitions == 0 ? 0.0 : (double) tracker.usageMillis.sum() / acquisitions);
+            metrics.put(pool + ".active", tracker.poolStats.getActiveConnections());
+            metrics.put(pool + ".idle", tracker.poolStats.getIdleConnections());
+            metrics.put(pool + ".total", tracker.poolStats.getTotalConnections());
+            metrics.put(pool + ".max", tracker.poolStats.getMaxConnections());
+            metrics.put(pool + ".pendingThreads", tracker.poolStats.getPendingThreads());
+        });
+        return metrics;
+    }
+}
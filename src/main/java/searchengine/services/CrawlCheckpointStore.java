@@ -0,0 +1,80 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import searchengine.mapping.CrawlFrontier.FrontierEntry;
+import searchengine.mapping.CrawlSnapshot;
+import searchengine.model.CrawlCheckpoint;
+import searchengine.model.Site;
+import searchengine.repositories.CrawlCheckpointRepository;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Хранит контрольную точку обхода сайта: очередь - строками "глубина\tссылка",
+ * найденные ссылки - массивом 64-битных отпечатков.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CrawlCheckpointStore {
+    private final CrawlCheckpointRepository checkpointRepository;
+
+    public void save(Site site, CrawlSnapshot snapshot) {
+        CrawlCheckpoint checkpoint = checkpointRepository.findBySiteId(site.getId()).orElseGet(CrawlCheckpoint::new);
+        checkpoint.setSite(site);
+        checkpoint.setFrontier(encodeFrontier(snapshot.pending()));
+        checkpoint.setVisited(encodeVisited(snapshot.visited()));
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        checkpointRepository.save(checkpoint);
+        log.info("Сайт {}: сохранена контрольная точка, в очереди {}, найдено ссылок {}", site.getUrl(),
+                snapshot.pending().size(), snapshot.visited().length);
+    }
+
+    public Optional<CrawlSnapshot> load(Site site) {
+        return checkpointRepository.findBySiteId(site.getId())
+                .map(checkpoint -> new CrawlSnapshot(decodeFrontier(checkpoint.getFrontier()),
+                        decodeVisited(checkpoint.getVisited())));
+    }
+
+    public void delete(Site site) {
+        checkpointRepository.deleteBySiteId(site.getId());
+    }
+
+    private static String encodeFrontier(List<FrontierEntry> entries) {
+        StringBuilder frontier = new StringBuilder();
+        for (FrontierEntry entry : entries) {
+            frontier.append(entry.depth()).append('\t').append(entry.url()).append('\n');
+        }
+        return frontier.toString();
+    }
+
+    private static List<FrontierEntry> decodeFrontier(String frontier) {
+        List<FrontierEntry> entries = new ArrayList<>();
+        for (String line : frontier.split("\n")) {
+            int separator = line.indexOf('\t');
+            if (separator > 0) {
+                entries.add(new FrontierEntry(line.substring(separator + 1),
+                        Integer.parseInt(line.substring(0, separator)), 0, 0));
+            }
+        }
+        return entries;
+    }
+
+    private static byte[] encodeVisited(long[] visited) {
+        ByteBuffer buffer = ByteBuffer.allocate(visited.length * Long.BYTES);
+        buffer.asLongBuffer().put(visited);
+        return buffer.array();
+    }
+
+    private static long[] decodeVisited(byte[] bytes) {
+        long[] visited = new long[bytes.length / Long.BYTES];
+        ByteBuffer.wrap(bytes).asLongBuffer().get(visited);
+        return visited;
+    }
+}
@@ -0,0 +1,44 @@
+package searchengine.services;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import searchengine.dto.Postings;
+import searchengine.mapping.PostingBlock;
+
+import java.util.List;
+
+/**
+ * Индекс читается из таблиц lemma и posting_block: список страниц леммы - несколько строк
+ * блоков {@link PostingBlock}, которые декодируются по порядку.
+ */
+public class DatabaseIndexStorage implements IndexStorage {
+    static final String FREQUENCY_SQL = "SELECT frequency FROM lemma WHERE site_id = ? AND lemma = ?";
+    static final String POSTINGS_SQL = "SELECT b.postings FROM posting_block b JOIN lemma l ON l.id = b.lemma_id"
+            + " WHERE l.site_id = ? AND l.lemma = ? ORDER BY b.first_page_id";
+    static final String PAGE_COUNT_SQL = "SELECT COUNT(*) FROM page WHERE site_id = ?";
+    private final JdbcTemplate jdbcTemplate;
+
+    public DatabaseIndexStorage(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public int frequency(int siteId, String lemma) {
+        List<Integer> frequency = jdbcTemplate.queryForList(FREQUENCY_SQL, Integer.class, siteId, lemma);
+        return frequency.isEmpty() ? 0 : Math.max(0, frequency.get(0));
+    }
+
+    @Override
+    public Postings postings(int siteId, String lemma) {
+        Postings.Builder postings = new Postings.Builder();
+        jdbcTemplate.query(POSTINGS_SQL, rs -> {
+            PostingBlock.decodePostings(rs.getBytes(1), postings);
+        }, siteId, lemma);
+        return postings.build();
+    }
+
+    @Override
+    public int pageCount(int siteId) {
+        Integer count = jdbcTemplate.queryForObject(PAGE_COUNT_SQL, Integer.class, siteId);
+        return count == null ? 0 : count;
+    }
+}
@@ -0,0 +1,40 @@
+package searchengine.services;
+
+import searchengine.dto.Postings;
+import searchengine.model.Site;
+
+/**
+ * Обратный индекс, из которого читает поиск: частоты лемм и списки страниц с рангами по сайтам.
+ * Индексация всегда пишет в MySQL; хранилище, которое держит индекс отдельно, получает
+ * уведомления о завершённой индексации сайта и об удалении его данных.
+ */
+public interface IndexStorage {
+
+    /**
+     * @return число страниц сайта, на которых встречается лемма, 0 - если леммы на сайте нет
+     */
+    int frequency(int siteId, String lemma);
+
+    Postings postings(int siteId, String lemma);
+
+    int pageCount(int siteId);
+
+    /**
+     * Данные сайта в MySQL изменились и согласованы: индексация сайта завершилась.
+     */
+    default void siteIndexed(Site site) {
+    }
+
+    /**
+     * В MySQL переиндексирована отдельная страница сайта. Вызывается на каждую страницу,
+     * поэтому не должно стоить столько же, сколько {@link #siteIndexed}.
+     */
+    default void pageIndexed(Site site) {
+    }
+
+    /**
+     * Данные сайта удалены из MySQL.
+     */
+    default void siteDropped(int siteId) {
+    }
+}
@@ -0,0 +1,159 @@
+package searchengine.services;
+
+import lombok.extern.slf4j.Slf4j;
+import searchengine.config.PipelineSettings;
+import searchengine.dto.PageLemmas;
+import searchengine.model.Lemma;
+import searchengine.model.Page;
+import searchengine.model.Site;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Конвейер индексации одного сайта: fetch → lemmatize → batched persist. Текст страницы
+ * уже извлечён обходчиком (PageAnalysis), HTML здесь не разбирается. Лемматизация идёт
+ * в общем для всех сайтов {@link AnalysisExecutor}, запись - в своём потоке конвейера.
+ * Очереди ограничены, поэтому обходчик ждёт, пока лемматизация и запись в БД
+ * не догонят его, и в памяти одновременно находится не больше нескольких сотен страниц.
+ */
+@Slf4j
+class IndexingPipeline {
+    private static final PageLemmas END_OF_LEMMAS = new PageLemmas(null, null, null);
+
+    private final Site site;
+    private final LemmaExtraction lemmaExtraction;
+    private final AnalysisExecutor analysisExecutor;
+    private final BatchPageInsert batchPageInsert;
+    private final PipelineSettings settings;
+    private final BlockingQueue<PageLemmas> analyzedPages;
+    private final Phaser analysisInFlight = new Phaser(1);
+    private final ExecutorService executor;
+    private final LemmaDictionary dictionary;
+    private final AtomicInteger persistedPages = new AtomicInteger();
+    private volatile String lastError;
+    private Consumer<Page> persistedListener = page -> {
+    };
+    private Future<?> persister;
+
+    /**
+     * @param existingLemmas леммы сайта, сохранённые прошлой индексацией
+     */
+    IndexingPipeline(Site site, List<Lemma> existingLemmas, LemmaExtraction lemmaExtraction,
+                     AnalysisExecutor analysisExecutor, BatchPageInsert batchPageInsert, PipelineSettings settings) {
+        this.site = site;
+        this.dictionary = new LemmaDictionary(site, existingLemmas);
+        this.lemmaExtraction = lemmaExtraction;
+        this.analysisExecutor = analysisExecutor;
+        this.batchPageInsert = batchPageInsert;
+        this.settings = settings;
+        this.analyzedPages = new ArrayBlockingQueue<>(settings.getQueueCapacity());
+        this.executor = Executors.newSingleThreadExecutor();
+    }
+
+    /**
+     * Вызывается для каждой страницы после того, как её пачка записана в БД.
+     */
+    void onPersisted(Consumer<Page> listener) {
+        this.persistedListener = listener;
+    }
+
+    void start() {
+        persister = executor.submit(this::persist);
+    }
+
+    /**
+     * Отправляет страницу на лемматизацию; если очередь пула заполнена, ждёт места в ней.
+     */
+    void accept(Page page) {
+        analysisInFlight.register();
+        try {
+            analysisExecutor.execute(() -> {
+                try {
+                    put(analyzedPages, dictionary.analyzed(page, lemmaExtraction.searchLemmaInText(
+                            page.getText() == null ? "" : page.getText())));
+                } catch (RuntimeException e) {
+                    log.error("Ошибка обработки страницы сайта {}: {}", site.getUrl(), e.getMessage());
+                } finally {
+                    analysisInFlight.arriveAndDeregister();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            analysisInFlight.arriveAndDeregister();
+            log.error("Страница {} сайта {} не принята на лемматизацию: {}", page.getPath(), site.getUrl(), e.getMessage());
+        }
+    }
+
+    /**
+     * Сообщает конвейеру, что обход закончен, и ждёт лемматизации и записи последних страниц.
+     */
+    void finish() {
+        analysisInFlight.arriveAndAwaitAdvance();
+        put(analyzedPages, END_OF_LEMMAS);
+        try {
+            persister.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            lastError = e.getCause().getMessage();
+        } finally {
+            executor.shutdown();
+        }
+        log.info("Конвейер сайта {} завершён, сохранено страниц: {}", site.getUrl(), persistedPages.get());
+    }
+
+    String getLastError() {
+        return lastError;
+    }
+
+    private void persist() {
+        List<PageLemmas> batch = new ArrayList<>(settings.getBatchSize());
+        try {
+            while (true) {
+                PageLemmas item = analyzedPages.poll(settings.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+                if (item == END_OF_LEMMAS) {
+                    break;
+                }
+                if (item != null) {
+                    batch.add(item);
+                }
+                if (batch.size() >= settings.getBatchSize() || (item == null && !batch.isEmpty())) {
+                    flush(batch);
+                }
+            }
+            flush(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flush(List<PageLemmas> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Page> newPages = batch.stream().map(PageLemmas::page).filter(page -> page.getId() == 0).toList();
+        try {
+            batchPageInsert.insertBatch(site, batch, dictionary);
+            dictionary.batchCommitted();
+            batch.forEach(item -> persistedListener.accept(item.page()));
+            log.info("Сайт {}: сохранено страниц {}", site.getUrl(), persistedPages.addAndGet(batch.size()));
+        } catch (RuntimeException e) {
+            dictionary.batchRolledBack(batch);
+            newPages.forEach(page -> page.setId(0));
+            log.error("Ошибка сохранения пачки страниц сайта {}: {}", site.getUrl(), e.getMessage());
+            lastError = e.getMessage();
+        }
+        batch.clear();
+    }
+
+    private <T> void put(BlockingQueue<T> queue, T item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package searchengine.services;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+/**
+ * Ход текущей индексации сайтов для /api/statistics: сколько страниц уже зафиксировано
+ * в БД в этом запуске и сколько ссылок ждёт обхода.
+ */
+@Component
+class IndexingProgress {
+    private final Map<String, SiteProgress> sites = new ConcurrentHashMap<>();
+
+    static final class SiteProgress {
+        private final AtomicInteger committedPages = new AtomicInteger();
+        private final IntSupplier queuedUrls;
+        private volatile boolean active = true;
+
+        private SiteProgress(IntSupplier queuedUrls) {
+            this.queuedUrls = queuedUrls;
+        }
+
+        void pageCommitted() {
+            committedPages.incrementAndGet();
+        }
+
+        int getCommittedPages() {
+            return committedPages.get();
+        }
+
+        int getQueuedUrls() {
+            return active ? queuedUrls.getAsInt() : 0;
+        }
+
+        boolean isActive() {
+            return active;
+        }
+    }
+
+    SiteProgress started(String siteUrl, IntSupplier queuedUrls) {
+        SiteProgress progress = new SiteProgress(queuedUrls);
+        sites.put(siteUrl, progress);
+        return progress;
+    }
+
+    void finished(String siteUrl) {
+        SiteProgress progress = sites.get(siteUrl);
+        if (progress != null) {
+            progress.active = false;
+        }
+    }
+
+    /**
+     * @return ход последней индексации сайта или null, если сайт не индексировался с запуска приложения
+     */
+    SiteProgress get(String siteUrl) {
+        return sites.get(siteUrl);
+    }
+
+    boolean isIndexing() {
+        return sites.values().stream().anyMatch(SiteProgress::isActive);
+    }
+}
@@ -1,8 +1,9 @@
 package searchengine.services;
 
+import searchengine.dto.IndexingMode;
 import searchengine.dto.IndexingResponse;
 
 public interface IndexingService {
-    IndexingResponse startIndexing();
+    IndexingResponse startIndexing(IndexingMode mode);
     IndexingResponse stopIndexing();
 }
@@ -1,13 +1,19 @@
 package searchengine.services;
 
-import org.apache.commons.lang3.tuple.Pair;
-import org.hibernate.Hibernate;
-import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import searchengine.config.AppConfigProperties;
+import searchengine.config.FetcherMode;
+import searchengine.config.PipelineSettings;
 import searchengine.config.Website;
 import searchengine.config.SitesList;
 import searchengine.dto.IndexingException;
+import searchengine.dto.IndexingMode;
 import searchengine.dto.IndexingResponse;
+import searchengine.dto.PageState;
 import searchengine.dto.ResponseStatusException;
+import searchengine.mapping.CrawlSnapshot;
+import searchengine.mapping.HostThrottle;
+import searchengine.mapping.KnownPages;
+import searchengine.mapping.PageFetcher;
 import searchengine.mapping.SiteCrawler;
 import searchengine.model.*;
 import lombok.RequiredArgsConstructor;
@@ -17,40 +23,49 @@ import searchengine.repositories.LemmaRepository;
 import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
 
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static searchengine.model.Status.*;
 
-import searchengine.config.AppConfigProperties;
-import org.springframework.jdbc.core.JdbcTemplate;
-
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class IndexingServiceImpl implements IndexingService {
     private final AtomicBoolean indexingInProgress = new AtomicBoolean(false);
+    private final Map<String, HostThrottle> hostThrottles = new ConcurrentHashMap<>();
     private ForkJoinPool forkJoinPool;
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
     private final LemmaRepository lemmaRepository;
     private final SitesList sitesList;
+    private final PageFetcher pageFetcher;
+    private final ExecutorService crawlerParseExecutor;
+    private final PipelineSettings pipelineSettings;
+    private final LemmaExtraction lemmaExtraction;
+    private final AnalysisExecutor analysisExecutor;
+    private final BatchPageInsert batchPageInsert;
+    private final CrawlCheckpointStore checkpointStore;
     private final AppConfigProperties connectionSetting;
-    private final IndexingPageImpl indexingPageImpl;
-    private final JdbcTemplate jdbcTemplate;
+    private final IndexingProgress indexingProgress;
+    private final SiteSwap siteSwap;
+    private final IndexStorage indexStorage;
+    private final PostingStore postingStore;
+    private static final int COMPACT_CHUNK = 200;
 
-    public IndexingResponse startIndexing() {
+    public IndexingResponse startIndexing(IndexingMode mode) {
 
         if (indexingInProgress.compareAndSet(false, true)) {
-            log.info("Запуск индексации");
-            forkJoinPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
-                    ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+            log.info("Запуск индексации, режим {}", mode);
+            forkJoinPool = new ForkJoinPool(parallelSites(), ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
             for (Website sitesConfig : sitesList.getSites()) {
-                forkJoinPool.submit(() -> indexSite(sitesConfig));
+                forkJoinPool.submit(() -> indexSite(sitesConfig, mode));
             }
             return new IndexingResponse(true);
         } else
@@ -58,6 +73,19 @@ public class IndexingServiceImpl implements IndexingService {
     }
 
 
+    /**
+     * Обход сайта держит поток пула до конца. В режиме BLOCKING запросы всех сайтов и так делят
+     * fetch-threads потоков загрузки, в режиме ASYNC сетевое ожидание потоков не занимает,
+     * поэтому по умолчанию обходятся сразу все сайты.
+     */
+    private int parallelSites() {
+        if (sitesList.getParallelSites() > 0) {
+            return sitesList.getParallelSites();
+        }
+        return connectionSetting.getFetcherMode() == FetcherMode.ASYNC ? Math.max(1, sitesList.getSites().size())
+                : Runtime.getRuntime().availableProcessors();
+    }
+
     public IndexingResponse stopIndexing() {
         if (!forkJoinPool.isShutdown()) {
             forkJoinPool.shutdown();
@@ -70,93 +98,184 @@ public class IndexingServiceImpl implements IndexingService {
     }
 
 
-    public void indexSite(Website sitesUrl) {
-        Site site;
-        if (siteRepository.existsByUrl(sitesUrl.getUrl())) {
-            try {
-                log.info("Этот сайт уже обрабатывался: {}", sitesUrl.getUrl());
-                site = siteRepository.findByUrl(sitesUrl.getUrl());
-                siteRepository.delete(site);
-                log.info("Удаляем сайт из БД {}", sitesUrl.getUrl());
-            } catch (ResponseStatusException e) {
-                log.error("Ошибка удаления {}", e.getMessage());
-                throw e;
+    /**
+     * Сайт, который уже индексировался, не удаляется: обходчик отправляет условные запросы
+     * и передаёт в конвейер только новые и изменившиеся страницы, а после полного обхода
+     * удаляются страницы, которых на сайте больше нет. Очередь обхода периодически сохраняется;
+     * в режиме RESUME прерванный обход продолжается с сохранённой очереди. Обход, остановленный
+     * лимитом сайта, оставляет статус INDEXED с причиной в lastError и сохранённую очередь.
+     * В режиме FULL уже проиндексированный сайт строится заново в теневой копии, см. {@link SiteSwap}.
+     */
+    public void indexSite(Website sitesUrl, IndexingMode mode) {
+        Site live = siteRepository.findByUrl(sitesUrl.getUrl());
+        boolean shadow = mode == IndexingMode.FULL && live != null;
+        Site site = live;
+        Status liveStatus = live == null ? null : live.getStatus();
+        KnownPages knownPages = KnownPages.none();
+        List<Lemma> existingLemmas = List.of();
+        if (shadow) {
+            log.info("Полная переиндексация сайта {} в теневую копию", sitesUrl.getUrl());
+            siteRepository.findStagingByUrl(sitesUrl.getUrl()).forEach(siteSwap::drop);
+            live.setStatus(INDEXING);
+            live.setStatusTime(LocalDateTime.now());
+            siteRepository.save(live);
+            site = createSite(sitesUrl);
+            site.setStaging(true);
+        } else if (site == null) {
+            site = createSite(sitesUrl);
+        } else {
+            log.info("Этот сайт уже обрабатывался, переиндексируем изменения: {}", sitesUrl.getUrl());
+            site.setName(sitesUrl.getName());
+            site.setStatus(INDEXING);
+            site.setStatusTime(LocalDateTime.now());
+            site.setLastError("");
+            int unanalyzed = pageRepository.resetUnanalyzedPages(site.getId());
+            if (unanalyzed > 0) {
+                log.info("Сайт {}: страниц без сохранённого текста и ссылок {}, они будут проиндексированы заново",
+                        sitesUrl.getUrl(), unanalyzed);
             }
+            knownPages = new KnownPages(pageRepository.findPageStatesBySite(site.getId()), pageRepository::findOutlinksById);
+            existingLemmas = lemmaRepository.findAllBySite(site.getId());
         }
-        site = createSite(sitesUrl);
         siteRepository.save(site);
+        Optional<CrawlSnapshot> checkpoint = mode == IndexingMode.RESUME ? checkpointStore.load(site) : Optional.empty();
 
+        IndexingPipeline pipeline = new IndexingPipeline(site, existingLemmas, lemmaExtraction, analysisExecutor,
+                batchPageInsert, pipelineSettings);
+        SiteCrawler crawler = new SiteCrawler(sitesUrl, pageFetcher, crawlerParseExecutor, indexingInProgress,
+                hostThrottles, knownPages, pipeline::accept);
+        checkpoint.ifPresent(crawler::resumeFrom);
+        if (sitesUrl.isRespectRobotsTxt()) {
+            crawler.respectRobots(connectionSetting.getUserAgent());
+        }
+        Site indexedSite = site;
+        if (!shadow) {
+            crawler.checkpointEvery(pipelineSettings.getCheckpointIntervalMs(), snapshot -> saveCheckpoint(indexedSite, snapshot));
+        }
+        IndexingProgress.SiteProgress progress = indexingProgress.started(sitesUrl.getUrl(), crawler::getQueuedUrls);
+        pipeline.onPersisted(page -> {
+            crawler.pagePersisted(page);
+            progress.pageCommitted();
+        });
+        pipeline.start();
         try {
             log.info("Началась индексация сайта: {}", sitesUrl.getUrl());
-            List<Page> pages = new SiteCrawler(sitesUrl.getUrl(), sitesUrl.getUrl(),
-                    connectionSetting, indexingInProgress).compute();
-            addSiteToPage(site, pages);
-            Pair<List<Lemma>, List<Index>> lemmaAndIndex = indexingPageImpl.findLemmaToText(site, pages);
-            site.setStatus(forkJoinPool.isShutdown() ? FAILED : INDEXED);
-            site.setStatusTime(LocalDateTime.now());
-            site.setLastError(forkJoinPool.isShutdown() ? "Индексация остановлена пользователем" : "");
-            allInsert(site, pages, lemmaAndIndex);
-
+            crawler.crawl();
         } catch (ResponseStatusException e) {
             log.error("Ошибка при индексации сайта: {}", sitesUrl.getUrl() + " - " + e.getMessage());
-            site.setStatus(FAILED);
-            site.setStatusTime(LocalDateTime.now());
             site.setLastError(e.getMessage());
-            siteRepository.save(site);
+        } finally {
+            pipeline.finish();
+            indexingProgress.finished(sitesUrl.getUrl());
         }
-        log.info("Сайт проиндексирован: {}", sitesUrl.getUrl());
-    }
 
-    public static Site createSite(Website sitesUrl) {
-        Site site = new Site();
-        site.setUrl(sitesUrl.getUrl());
-        site.setName(sitesUrl.getName());
+        if (forkJoinPool.isShutdown()) {
+            site.setStatus(FAILED);
+            site.setLastError("Индексация остановлена пользователем");
+        } else if (pipeline.getLastError() != null) {
+            site.setStatus(FAILED);
+            site.setLastError(pipeline.getLastError());
+        } else if (!site.getLastError().isEmpty()) {
+            site.setStatus(FAILED);
+        } else if (crawler.getStopReason() != null) {
+            site.setStatus(INDEXED);
+            site.setLastError(crawler.getStopReason());
+        } else {
+            site.setStatus(INDEXED);
+            removeStalePages(site, knownPages);
+        }
         site.setStatusTime(LocalDateTime.now());
-        site.setLastError("");
-        site.setStatus(INDEXING);
-        return site;
+        if (shadow) {
+            publishShadow(live, liveStatus, site);
+            return;
+        }
+        if (site.getStatus() == INDEXED && crawler.getStopReason() == null) {
+            checkpointStore.delete(site);
+        } else {
+            saveCheckpoint(site, crawler.snapshot());
+        }
+        siteRepository.save(site);
+        if (site.getStatus() == INDEXED) {
+            compactPostings(site);
+            indexStorage.siteIndexed(site);
+        }
+        log.info("Сайт проиндексирован: {}", sitesUrl.getUrl());
     }
 
-    private List<Page> addSiteToPage(Site site, List<Page> pages) {
-        pages.forEach(p -> p.setSite(site));
-        return pages;
+    /**
+     * Успешно построенная теневая копия подменяет действующий сайт, и старое поколение данных
+     * удаляется; неудачная - удаляется, а действующий сайт остаётся с прежними данными.
+     * Хранилище индекса получает копию до подмены, чтобы поиск сразу после неё читал новое поколение.
+     */
+    private void publishShadow(Site live, Status liveStatus, Site staging) {
+        if (staging.getStatus() == INDEXED) {
+            compactPostings(staging);
+            indexStorage.siteIndexed(staging);
+            siteSwap.swap(live, staging);
+            log.info("Сайт {}: опубликовано новое поколение данных", staging.getUrl());
+            dropQuietly(live);
+        } else {
+            log.error("Полная переиндексация сайта {} не удалась: {}", staging.getUrl(), staging.getLastError());
+            live.setStatus(liveStatus);
+            live.setStatusTime(LocalDateTime.now());
+            live.setLastError("Полная переиндексация не удалась: " + staging.getLastError());
+            siteRepository.save(live);
+            dropQuietly(staging);
+        }
     }
 
-    private void allInsert(Site site, List<Page> pages, Pair<List<Lemma>, List<Index>> lemmaAndIndex) {
-        forkJoinPool.execute(() -> {
-            String string = forkJoinPool.isShutdown() ? String.format("Сохранение сайта %s с остановленной индексацией", site.getName()) : String.format("Сохранение проиндексированного сайта %s", site.getName());
-            log.info(string);
-            siteRepository.save(site);
-            pageRepository.saveAll(pages);
-            lemmaRepository.saveAll(lemmaAndIndex.getLeft());
-            batchIndexInsert(lemmaAndIndex.getRight());
-        });
-
+    private void dropQuietly(Site site) {
+        try {
+            siteSwap.drop(site);
+        } catch (RuntimeException e) {
+            log.error("Ошибка удаления поколения данных сайта {} (id {}): {}", site.getUrl(), site.getId(), e.getMessage());
+        }
     }
 
-    private void batchIndexInsert(List<Index> indexList) {
-        String sql = "INSERT INTO indexes (page_id,lemma_id,`runk`) VALUES (?,?,?)";
-        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
-            @Override
-            public void setValues(PreparedStatement ps, int i) throws SQLException {
-                Index index = indexList.get(i);
-                Hibernate.initialize(index.getPage());
-                Hibernate.initialize(index.getLemma());
-                ps.setObject(1, index.getPage().getId());
-                ps.setObject(2, index.getLemma().getId());
-                ps.setFloat(3, index.getRank());
-            }
-
-            @Override
-            public int getBatchSize() {  //  возвращает размер списка индексов, который соответствует количеству записей, обрабатываемых одним пакетом
-                return indexList.size();
+    /**
+     * Сливает блоки списков страниц, записанные пачками индексации, в полные блоки;
+     * при ошибке поиск остаётся корректным, только читает больше блоков.
+     */
+    private void compactPostings(Site site) {
+        try {
+            List<Integer> lemmaIds = postingStore.fragmentedLemmas(site.getId());
+            for (int from = 0; from < lemmaIds.size(); from += COMPACT_CHUNK) {
+                postingStore.compact(site.getId(), lemmaIds.subList(from, Math.min(lemmaIds.size(), from + COMPACT_CHUNK)));
             }
-        });
-
+            log.info("Сайт {}: объединены блоки списков страниц лемм: {}", site.getUrl(), lemmaIds.size());
+        } catch (RuntimeException e) {
+            log.error("Ошибка объединения блоков списков страниц сайта {}: {}", site.getUrl(), e.getMessage());
+        }
     }
-}
-
-
 
+    private void saveCheckpoint(Site site, CrawlSnapshot snapshot) {
+        try {
+            checkpointStore.save(site, snapshot);
+        } catch (RuntimeException e) {
+            log.error("Ошибка сохранения контрольной точки сайта {}: {}", site.getUrl(), e.getMessage());
+        }
+    }
 
+    private void removeStalePages(Site site, KnownPages knownPages) {
+        List<Integer> stalePages = knownPages.unseen().stream().map(PageState::id).toList();
+        try {
+            batchPageInsert.deletePages(stalePages);
+            int lemmas = batchPageInsert.deleteUnusedLemmas(site);
+            log.info("Сайт {}: удалено исчезнувших страниц {}, неиспользуемых лемм {}", site.getUrl(), stalePages.size(), lemmas);
+        } catch (RuntimeException e) {
+            log.error("Ошибка удаления устаревших страниц сайта {}: {}", site.getUrl(), e.getMessage());
+            site.setStatus(FAILED);
+            site.setLastError(e.getMessage());
+        }
+    }
 
+    public static Site createSite(Website sitesUrl) {
+        Site site = new Site();
+        site.setUrl(sitesUrl.getUrl());
+        site.setName(sitesUrl.getName());
+        site.setStatusTime(LocalDateTime.now());
+        site.setLastError("");
+        site.setStatus(INDEXING);
+        return site;
+    }
+}
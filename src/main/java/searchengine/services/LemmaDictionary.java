@@ -0,0 +1,158 @@
+package searchengine.services;
+
+import searchengine.dto.PageLemmas;
+import searchengine.mapping.PositionList;
+import searchengine.model.Lemma;
+import searchengine.model.Page;
+import searchengine.model.Site;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Словарь лемм одного сайта на время индексации. Потоки лемматизации переводят леммы
+ * страницы в плотные целые номера и сразу учитывают страницу в частоте каждой леммы,
+ * поэтому при записи пачки не нужно ни искать леммы по тексту, ни пересчитывать частоты.
+ * Сущности Lemma создаются и читаются только потоком записи конвейера; он же сообщает
+ * словарю, зафиксирована ли транзакция пачки, чтобы после отката вернуть счётчики и id.
+ */
+class LemmaDictionary {
+    private final Site site;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile Entry[] entries = new Entry[1024];
+    private int size;
+    private final List<Entry> batchEntries = new ArrayList<>();
+
+    private static final class Entry {
+        private final String text;
+        private final AtomicInteger unsavedPages = new AtomicInteger();
+        private Lemma lemma;
+        private boolean inBatch;
+        private boolean createdInBatch;
+        private int takenInBatch;
+
+        private Entry(String text) {
+            this.text = text;
+        }
+    }
+
+    /**
+     * @param existingLemmas леммы сайта, сохранённые прошлой индексацией
+     */
+    LemmaDictionary(Site site, List<Lemma> existingLemmas) {
+        this.site = site;
+        for (Lemma lemma : existingLemmas) {
+            entry(intern(lemma.getLemma())).lemma = lemma;
+        }
+    }
+
+    /**
+     * Переводит леммы страницы в номера словаря и учитывает страницу в их частоте.
+     */
+    PageLemmas analyzed(Page page, Map<String, PositionList> lemmas) {
+        int[] lemmaIds = new int[lemmas.size()];
+        PositionList[] positions = new PositionList[lemmas.size()];
+        int i = 0;
+        for (Map.Entry<String, PositionList> lemma : lemmas.entrySet()) {
+            int id = intern(lemma.getKey());
+            entry(id).unsavedPages.incrementAndGet();
+            lemmaIds[i] = id;
+            positions[i++] = lemma.getValue();
+        }
+        return new PageLemmas(page, lemmaIds, positions);
+    }
+
+    int intern(String lemma) {
+        Integer id = ids.get(lemma);
+        return id != null ? id : ids.computeIfAbsent(lemma, this::append);
+    }
+
+    int size() {
+        return ids.size();
+    }
+
+    /**
+     * Сущность леммы; для новой леммы создаётся несохранённая сущность с нулевой частотой.
+     */
+    Lemma lemma(int id) {
+        Entry entry = entry(id);
+        if (entry.lemma == null) {
+            Lemma lemma = new Lemma();
+            lemma.setSite(site);
+            lemma.setLemma(entry.text);
+            lemma.setFrequency(0);
+            entry.lemma = lemma;
+        }
+        return entry.lemma;
+    }
+
+    /**
+     * Число проанализированных страниц с леммой, которые ещё не учтены в её частоте в БД;
+     * счётчик обнуляется. Может включать страницы следующих пачек - их частота уже будет учтена.
+     */
+    int takeUnsavedPages(int id) {
+        Entry entry = entry(id);
+        if (!entry.inBatch) {
+            entry.inBatch = true;
+            entry.createdInBatch = entry.lemma == null || entry.lemma.getId() == null;
+            batchEntries.add(entry);
+        }
+        int taken = entry.unsavedPages.getAndSet(0);
+        entry.takenInBatch += taken;
+        return taken;
+    }
+
+    void batchCommitted() {
+        batchEntries.forEach(LemmaDictionary::resetBatch);
+        batchEntries.clear();
+    }
+
+    /**
+     * Транзакция пачки откачена: страницы пачки в БД не попали, поэтому в несохранённые
+     * возвращается всё взятое пачкой, кроме самих этих страниц, а id новых лемм сбрасываются.
+     */
+    void batchRolledBack(List<PageLemmas> batch) {
+        for (PageLemmas pageLemmas : batch) {
+            for (int id : pageLemmas.lemmaIds()) {
+                Entry entry = entry(id);
+                if (entry.inBatch) {
+                    entry.takenInBatch--;
+                } else {
+                    entry.unsavedPages.decrementAndGet();
+                }
+            }
+        }
+        for (Entry entry : batchEntries) {
+            entry.unsavedPages.addAndGet(entry.takenInBatch);
+            if (entry.createdInBatch && entry.lemma != null) {
+                entry.lemma.setId(null);
+            }
+            resetBatch(entry);
+        }
+        batchEntries.clear();
+    }
+
+    private static void resetBatch(Entry entry) {
+        entry.inBatch = false;
+        entry.createdInBatch = false;
+        entry.takenInBatch = 0;
+    }
+
+    private Entry entry(int id) {
+        return entries[id];
+    }
+
+    private synchronized int append(String lemma) {
+        Entry[] current = entries;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        current[size] = new Entry(lemma);
+        entries = current;
+        return size++;
+    }
+}
@@ -1,86 +1,63 @@
 package searchengine.services;
 
 import lombok.RequiredArgsConstructor;
-import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
-import org.jsoup.Jsoup;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Service;
+import searchengine.mapping.PositionList;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
 @Component
 @RequiredArgsConstructor
 class LemmaExtraction {
-    private static final String[] particles = new String[]{"МЕЖД", "ПРЕДЛ", "СОЮЗ", "ЧАСТ"};
-    private final RussianLuceneMorphology luceneMorphology;
-    private static final String PATTERN = "^[а-я]+$";
-
-    public HashMap<String, Integer> searchLemma(String text) {
-        Set<String> words = parsHtml(text);
-        HashMap<String, Integer> lemmas = new HashMap<>();
-        for (String word : words) {
-            if (isWord(word)) {
-                List<String> wordBaseForms = luceneMorphology.getMorphInfo(word);
-                if (isWordBase(wordBaseForms)) {
-                    continue;
-                }
-                List<String> normalForms = luceneMorphology.getNormalForms(word);
-                if (!normalForms.isEmpty()) {
-                    String normalWord = normalForms.get(0);
-                    if (normalWord.length() >= 3) {
-                        lemmas.merge(normalWord, 1, Integer::sum);
-                    }
-                }
+    private static final int MIN_WORD_LENGTH = 3;
+    private final AnalyzerChain analyzers;
+    private final MorphologyCache morphologyCache;
+
+    /**
+     * Леммы текста с позициями всех их вхождений; число позиций - частота леммы на странице.
+     */
+    public Map<String, PositionList> searchLemmaInText(String text) {
+        Map<String, String> lemmaOfWord = new HashMap<>();
+        Map<String, PositionList> lemmas = new HashMap<>();
+        TextTokenizer.tokenize(text, MIN_WORD_LENGTH, (word, position, script) -> {
+            MorphologyAnalyzer analyzer = analyzers.forScript(script);
+            if (analyzer == null) {
+                return;
             }
-        }
+            analyzer.countToken();
+            String normalWord = lemmaOfWord.computeIfAbsent(word, w -> indexedLemma(w, analyzer));
+            if (!normalWord.isEmpty()) {
+                lemmas.computeIfAbsent(normalWord, w -> new PositionList()).add(position);
+            }
+        });
         return lemmas;
     }
 
-    private Set<String> parsHtml(String content) {
-        String text = Jsoup.parse(content).text();
-        String[] wordsArray = text.toLowerCase(Locale.ROOT)
-                .replaceAll("([^а-яa-z\\s])", " ")
-                .trim()
-                .split("\\s+");
-
-        return Arrays.stream(wordsArray).
-                filter(w -> w.length() > 2 && !w.isBlank()).
-                collect(Collectors.toCollection(HashSet::new));
-    }
-
-    private boolean isWord(String word) {
-        return word.matches(PATTERN);
-    }
-
-    private boolean isWordBase(List<String> wordBaseForms) {
-        return wordBaseForms.stream().anyMatch(this::isParticles);
-    }
-
-    private boolean isParticles(String wordBase) {
-        for (String property : particles) {
-            if (wordBase.toUpperCase().contains(property)) {
-                return true;
-            }
+    /**
+     * @return лемма слова или пустая строка, если слово не индексируется
+     */
+    private String indexedLemma(String word, MorphologyAnalyzer analyzer) {
+        MorphologyCache.WordForm form = morphologyCache.get(word, analyzer::analyze);
+        if (form.particle() || form.normalForms().isEmpty()) {
+            return "";
         }
-        return false;
+        String normalWord = form.normalForms().get(0);
+        return normalWord.length() >= MIN_WORD_LENGTH ? normalWord : "";
     }
 
     public Set<String> getLemmaSet(String text) {
-        Set<String> textArray = parsHtml(text);
         Set<String> lemmaSet = new HashSet<>();
-        for (String word : textArray) {
-            if (word.length() >= 3) {
-                if (isWord(word)) {
-                    List<String> wordBaseForms = luceneMorphology.getMorphInfo(word);
-                    if (isWordBase(wordBaseForms)) {
-                        continue;
-                    }
-                    lemmaSet.addAll(luceneMorphology.getNormalForms(word));
+        TextTokenizer.tokenize(text, MIN_WORD_LENGTH, (word, position, script) -> {
+            MorphologyAnalyzer analyzer = analyzers.forScript(script);
+            if (analyzer != null) {
+                MorphologyCache.WordForm form = morphologyCache.get(word, analyzer::analyze);
+                if (!form.particle()) {
+                    lemmaSet.addAll(form.normalForms());
                 }
             }
-        }
+        });
         return lemmaSet;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,7 @@
+package searchengine.services;
+
+import java.util.Map;
+
+public interface MetricsService {
+    Map<String, Map<String, Number>> getMetrics();
+}
@@ -0,0 +1,23 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Service
+@RequiredArgsConstructor
+public class MetricsServiceImpl implements MetricsService {
+    private final List<MetricsSource> sources;
+
+    @Override
+    public Map<String, Map<String, Number>> getMetrics() {
+        Map<String, Map<String, Number>> metrics = new TreeMap<>();
+        for (MetricsSource source : sources) {
+            metrics.put(source.metricsName(), new TreeMap<>(source.metrics()));
+        }
+        return metrics;
+    }
+}
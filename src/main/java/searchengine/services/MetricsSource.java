@@ -0,0 +1,12 @@
+package searchengine.services;
+
+import java.util.Map;
+
+/**
+ * Компонент, который отдаёт свои счётчики в /api/metrics.
+ */
+public interface MetricsSource {
+    String metricsName();
+
+    Map<String, Number> metrics();
+}
@@ -0,0 +1,119 @@
+package searchengine.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.morphology.LuceneMorphology;
+import searchengine.services.TextTokenizer.Script;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Морфологический анализатор одного языка. Словарь загружается при первом слове
+ * на алфавите анализатора и дальше используется всеми потоками.
+ */
+@Slf4j
+class MorphologyAnalyzer {
+    private final String name;
+    private final Script script;
+    private final Callable<LuceneMorphology> loader;
+    private final Set<String> serviceTags;
+    private volatile LuceneMorphology morphology;
+    private volatile long loadMillis;
+    private final LongAdder tokens = new LongAdder();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder lookupNanos = new LongAdder();
+
+    /**
+     * @param serviceTags граммемы служебных частей речи, слова с ними не индексируются
+     */
+    MorphologyAnalyzer(String name, Script script, Callable<LuceneMorphology> loader, Set<String> serviceTags) {
+        this.name = name;
+        this.script = script;
+        this.loader = loader;
+        this.serviceTags = serviceTags;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    Script getScript() {
+        return script;
+    }
+
+    void countToken() {
+        tokens.increment();
+    }
+
+    /**
+     * Разбор слова словарём; результат кэшируется в {@link MorphologyCache}.
+     */
+    MorphologyCache.WordForm analyze(String word) {
+        LuceneMorphology dictionary = morphology();
+        long start = System.nanoTime();
+        try {
+            for (String info : dictionary.getMorphInfo(word)) {
+                if (isServiceWord(info)) {
+                    return new MorphologyCache.WordForm(true, List.of());
+                }
+            }
+            return new MorphologyCache.WordForm(false, List.copyOf(dictionary.getNormalForms(word)));
+        } catch (RuntimeException e) {
+            log.debug("Слово {} не разобрано анализатором {}: {}", word, name, e.getMessage());
+            return new MorphologyCache.WordForm(false, List.of());
+        } finally {
+            lookups.increment();
+            lookupNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Граммемы в описании словоформы идут после '|' через пробел, например "и|n СОЮЗ".
+     */
+    private boolean isServiceWord(String morphInfo) {
+        int separator = morphInfo.indexOf('|');
+        for (String tag : morphInfo.substring(separator + 1).split(" ")) {
+            if (serviceTags.contains(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private LuceneMorphology morphology() {
+        LuceneMorphology loaded = morphology;
+        if (loaded == null) {
+            synchronized (this) {
+                loaded = morphology;
+                if (loaded == null) {
+                    long start = System.nanoTime();
+                    try {
+                        loaded = loader.call();
+                    } catch (Exception e) {
+                        throw new IllegalStateException("Не удалось загрузить словарь " + name + ": " + e.getMessage(), e);
+                    }
+                    loadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    morphology = loaded;
+                    log.info("Загружен словарь {} за {} мс", name, loadMillis);
+                }
+            }
+        }
+        return loaded;
+    }
+
+    Map<String, Number> metrics() {
+        long nanos = lookupNanos.sum();
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        metrics.put(name + ".loaded", morphology == null ? 0 : 1);
+        metrics.put(name + ".loadMillis", loadMillis);
+        metrics.put(name + ".tokens", tokens.sum());
+        metrics.put(name + ".lookups", lookups.sum());
+        metrics.put(name + ".lookupsPerSecond", nanos == 0 ? 0.0 : lookups.sum() * 1e9 / nanos);
+        return metrics;
+    }
+}
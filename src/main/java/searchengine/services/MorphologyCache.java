@@ -0,0 +1,129 @@
+package searchengine.services;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.MorphologySettings;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Общий для всех потоков кэш разбора словоформ: слово → (служебная часть речи, нормальные формы).
+ * Разбит на независимые сегменты с LRU-вытеснением внутри каждого; объём ограничен
+ * приблизительной оценкой занимаемой памяти (morphology-settings.cache-max-bytes).
+ */
+@Component
+class MorphologyCache implements MetricsSource {
+    private static final int SEGMENTS = 32;
+    private static final int ENTRY_OVERHEAD = 120;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long maxBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    record WordForm(boolean particle, List<String> normalForms) {
+    }
+
+    MorphologyCache(MorphologySettings settings) {
+        this.maxBytes = settings.getCacheMaxBytes();
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(maxBytes / SEGMENTS);
+        }
+    }
+
+    /**
+     * Возвращает разбор слова из кэша или вычисляет его через loader. Разбор вычисляется
+     * вне блокировки сегмента, поэтому два потока могут изредка разобрать одно слово дважды.
+     */
+    WordForm get(String word, Function<String, WordForm> loader) {
+        Segment segment = segments[spread(word.hashCode()) & (SEGMENTS - 1)];
+        WordForm form;
+        synchronized (segment) {
+            form = segment.entries.get(word);
+        }
+        if (form != null) {
+            hits.incrementAndGet();
+            return form;
+        }
+        misses.incrementAndGet();
+        form = loader.apply(word);
+        if (maxBytes > 0) {
+            synchronized (segment) {
+                evictions.addAndGet(segment.put(word, form));
+            }
+        }
+        return form;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static long weight(String word, WordForm form) {
+        long weight = ENTRY_OVERHEAD + 2L * word.length();
+        for (String normalForm : form.normalForms()) {
+            weight += 48 + 2L * normalForm.length();
+        }
+        return weight;
+    }
+
+    @Override
+    public String metricsName() {
+        return "morphologyCache";
+    }
+
+    @Override
+    public Map<String, Number> metrics() {
+        long entries = 0;
+        long bytes = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                entries += segment.entries.size();
+                bytes += segment.bytes;
+            }
+        }
+        long total = hits.get() + misses.get();
+        return Map.of(
+                "hits", hits.get(),
+                "misses", misses.get(),
+                "hitRate", total == 0 ? 0.0 : (double) hits.get() / total,
+                "evictions", evictions.get(),
+                "entries", entries,
+                "estimatedBytes", bytes,
+                "maxBytes", maxBytes);
+    }
+
+    private static final class Segment {
+        private final LinkedHashMap<String, WordForm> entries = new LinkedHashMap<>(256, 0.75f, true);
+        private final long maxBytes;
+        private long bytes;
+
+        private Segment(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        /**
+         * @return число вытесненных записей
+         */
+        private int put(String word, WordForm form) {
+            WordForm previous = entries.put(word, form);
+            if (previous != null) {
+                bytes -= weight(word, previous);
+            }
+            bytes += weight(word, form);
+            int evicted = 0;
+            Iterator<Map.Entry<String, WordForm>> eldest = entries.entrySet().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<String, WordForm> entry = eldest.next();
+                bytes -= weight(entry.getKey(), entry.getValue());
+                eldest.remove();
+                evicted++;
+            }
+            return evicted;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.mapping.PostingBlock;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Списки страниц лемм в таблице posting_block: блоки {@link PostingBlock} до PostingBlock.MAX_SIZE страниц
+ * на лемму сайта вместо строки на каждую пару страница-лемма. Каждая пачка индексации добавляет
+ * по блоку на свою лемму, поэтому блоки одной леммы могут пересекаться по id страниц; после
+ * индексации сайта блоки лемм сливаются в полные, см. {@link #compact}. Перезаписываемые
+ * блоки читаются с блокировкой (SELECT ... FOR UPDATE), чтобы удаление страниц и слияние
+ * блоков одной леммы в параллельных транзакциях не затирали друг друга.
+ */
+@Component
+@RequiredArgsConstructor
+class PostingStore {
+    private static final int CHUNK = 500;
+    private static final List<String> BLOCK_COLUMNS = List.of("site_id", "lemma_id", "first_page_id", "last_page_id",
+            "page_count", "postings", "positions");
+    private final JdbcTemplate jdbcTemplate;
+    private final BulkLoader bulkLoader;
+
+    private record BlockRow(int siteId, int lemmaId, PostingBlock block) {
+    }
+
+    /**
+     * @param entries страницы по id леммы, в любом порядке
+     */
+    void append(int siteId, Map<Integer, List<PostingBlock.Entry>> entries) {
+        List<BlockRow> rows = new ArrayList<>();
+        entries.forEach((lemmaId, lemmaEntries) -> {
+            List<PostingBlock.Entry> sorted = new ArrayList<>(lemmaEntries);
+            sorted.sort(Comparator.comparingInt(PostingBlock.Entry::pageId));
+            PostingBlock.split(sorted, PostingBlock.MAX_SIZE).forEach(block -> rows.add(new BlockRow(siteId, lemmaId, block)));
+        });
+        bulkLoader.insert("posting_block", BLOCK_COLUMNS, rows, (ps, first, row) -> {
+            ps.setInt(first, row.siteId());
+            ps.setInt(first + 1, row.lemmaId());
+            ps.setInt(first + 2, row.block().firstPageId());
+            ps.setInt(first + 3, row.block().lastPageId());
+            ps.setInt(first + 4, row.block().size());
+            ps.setBytes(first + 5, row.block().postings());
+            ps.setBytes(first + 6, row.block().positions());
+        }, row -> 96 + 2L * (row.block().postings().length + row.block().positions().length), null);
+    }
+
+    /**
+     * Убирает страницы из блоков лемм, опустевшие блоки удаляет. Читаются только блоки,
+     * диапазон id которых пересекается с диапазоном удаляемых страниц. Вызывается в транзакции:
+     * блокировки прочитанных блоков держатся до перезаписи.
+     */
+    void remove(Collection<Integer> lemmaIds, Set<Integer> pageIds) {
+        if (lemmaIds.isEmpty() || pageIds.isEmpty()) {
+            return;
+        }
+        int minPageId = Collections.min(pageIds);
+        int maxPageId = Collections.max(pageIds);
+        List<Integer> lemmas = new ArrayList<>(lemmaIds);
+        List<Object[]> updates = new ArrayList<>();
+        List<Integer> emptied = new ArrayList<>();
+        for (int from = 0; from < lemmas.size(); from += CHUNK) {
+            List<Object> args = new ArrayList<>(lemmas.subList(from, Math.min(lemmas.size(), from + CHUNK)));
+            String ids = placeholders(args.size());
+            args.add(maxPageId);
+            args.add(minPageId);
+            jdbcTemplate.query("SELECT id, first_page_id, last_page_id, page_count, postings, positions FROM posting_block"
+                    + " WHERE lemma_id IN (" + ids + ") AND first_page_id <= ? AND last_page_id >= ? FOR UPDATE", rs -> {
+                PostingBlock block = new PostingBlock(rs.getInt(2), rs.getInt(3), rs.getInt(4), rs.getBytes(5), rs.getBytes(6));
+                List<PostingBlock.Entry> kept = block.entries().stream()
+                        .filter(entry -> !pageIds.contains(entry.pageId())).toList();
+                if (kept.isEmpty()) {
+                    emptied.add(rs.getInt(1));
+                } else if (kept.size() < block.size()) {
+                    PostingBlock rewritten = PostingBlock.encode(kept);
+                    updates.add(new Object[]{rewritten.firstPageId(), rewritten.lastPageId(), rewritten.size(),
+                            rewritten.postings(), rewritten.positions(), rs.getInt(1)});
+                }
+            }, args.toArray());
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE posting_block SET first_page_id = ?, last_page_id = ?, page_count = ?,"
+                    + " postings = ?, positions = ? WHERE id = ?", updates);
+        }
+        deleteBlocks(emptied);
+    }
+
+    /**
+     * @return леммы сайта, блоков у которых больше, чем нужно для их страниц
+     */
+    List<Integer> fragmentedLemmas(int siteId) {
+        return jdbcTemplate.queryForList("SELECT lemma_id FROM posting_block WHERE site_id = ? GROUP BY lemma_id"
+                + " HAVING COUNT(*) > CEIL(SUM(page_count) / ?)", Integer.class, siteId, PostingBlock.MAX_SIZE);
+    }
+
+    /**
+     * Переписывает блоки лемм сайта в непересекающиеся блоки по PostingBlock.MAX_SIZE страниц.
+     * Блокировка чтения в REPEATABLE READ захватывает и промежутки индекса по lemma_id, поэтому
+     * до конца слияния параллельная транзакция не может ни изменить блоки этих лемм, ни добавить новые.
+     */
+    @Transactional(isolation = Isolation.REPEATABLE_READ)
+    public void compact(int siteId, List<Integer> lemmaIds) {
+        if (lemmaIds.isEmpty()) {
+            return;
+        }
+        Map<Integer, List<PostingBlock.Entry>> entries = new HashMap<>();
+        List<Integer> oldBlocks = new ArrayList<>();
+        jdbcTemplate.query("SELECT id, lemma_id, first_page_id, last_page_id, page_count, postings, positions"
+                + " FROM posting_block WHERE lemma_id IN (" + placeholders(lemmaIds.size()) + ") FOR UPDATE", rs -> {
+            oldBlocks.add(rs.getInt(1));
+            entries.computeIfAbsent(rs.getInt(2), id -> new ArrayList<>())
+                    .addAll(new PostingBlock(rs.getInt(3), rs.getInt(4), rs.getInt(5), rs.getBytes(6), rs.getBytes(7)).entries());
+        }, lemmaIds.toArray());
+        deleteBlocks(oldBlocks);
+        append(siteId, entries);
+    }
+
+    private void deleteBlocks(List<Integer> blockIds) {
+        for (int from = 0; from < blockIds.size(); from += CHUNK) {
+            List<Integer> chunk = blockIds.subList(from, Math.min(blockIds.size(), from + CHUNK));
+            jdbcTemplate.update("DELETE FROM posting_block WHERE id IN (" + placeholders(chunk.size()) + ")", chunk.toArray());
+        }
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+}
@@ -2,25 +2,22 @@ package searchengine.services;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.dto.PageRelevance;
+import searchengine.dto.PageSummary;
+import searchengine.dto.Postings;
 import searchengine.dto.ResponseStatusException;
 import searchengine.dto.ResponseSearch;
 import searchengine.dto.ResultSearch;
 import searchengine.mapping.SnippetGenerator;
-import searchengine.model.Index;
-import searchengine.model.Lemma;
-import searchengine.model.Page;
 import searchengine.model.Site;
-import searchengine.repositories.IndexRepository;
-import searchengine.repositories.LemmaRepository;
 import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 
@@ -31,9 +28,9 @@ public class SearchServiceImpl implements SearchService{
     private final LemmaExtraction lemmaExtraction;
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
-    private final LemmaRepository lemmaRepository;
-    private final IndexRepository indexRepository;
+    private final IndexStorage indexStorage;
     private static final Logger logger = LoggerFactory.getLogger(SearchServiceImpl.class);
+    @Transactional(readOnly = true)
     public ResponseSearch systemSearch(String query, String siteUrl, Integer offset, Integer limit) {
         if (query.isBlank()) {
             return new ResponseSearch(false, "Задан пустой поисковый запрос");
@@ -41,35 +38,35 @@ public class SearchServiceImpl implements SearchService{
 
         try {
             Site site = siteRepository.findByUrl(siteUrl);
+            List<Site> sites = site == null ? siteRepository.findLive() : List.of(site);
             logger.info("Получен поисковый запрос следующего содержания: {}", query);
+            long start = System.nanoTime();
             Set<String> uniqueLemma = lemmaExtraction.getLemmaSet(query);
-            List<Lemma> filterLemma = calculatingLemmasOnPages(uniqueLemma, site);
+            List<String> filterLemma = calculatingLemmasOnPages(uniqueLemma, sites);
 
             if (filterLemma.isEmpty()) {
                 logger.info("Список лемм пуст, по запросу лемм в БД не найдено");
                 return new ResponseSearch(true, 0, List.of());
             }
 
-            List<Page> pages = indexRepository.findPagesByLemma(filterLemma.get(0).getLemma());
-
-            for (Lemma lemma : filterLemma) {
-                List<Page> pageWithLemma = indexRepository.findPagesByLemma(lemma.getLemma());
-                pages = pages.stream()
-                        .filter(pageWithLemma::contains)
-                        .toList();
+            List<PageHit> hits = new ArrayList<>();
+            for (Site currentSite : sites) {
+                Postings pages = matchingPages(currentSite, filterLemma);
+                for (int i = 0; i < pages.size(); i++) {
+                    hits.add(new PageHit(pages.pageIds()[i], pages.ranks()[i]));
+                }
             }
+            hits.sort(Comparator.comparingDouble(PageHit::relevance).reversed());
+            logger.debug("Поиск по индексу: лемм {}, страниц {}, {} мс", filterLemma.size(), hits.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
 
-            List<PageRelevance> resultRelevance = calculatedRelevance(filterLemma);
-            resultRelevance.sort(Comparator.comparing(PageRelevance::absoluteRelevance).reversed());
-
-            List<ResultSearch> resultSearchList = createdRequest(resultRelevance, query);
-
-            int totalResultSearchCount = resultSearchList.size();
-            List<ResultSearch> paginationResult = resultSearchList.stream()
+            double maxAbsoluteRelevance = hits.isEmpty() ? 0.1 : hits.get(0).relevance();
+            List<PageHit> paginationHits = hits.stream()
                     .skip(offset)
                     .limit(limit)
                     .toList();
-            return new ResponseSearch(true, totalResultSearchCount, paginationResult);
+            List<ResultSearch> paginationResult = createdRequest(calculatedRelevance(paginationHits, maxAbsoluteRelevance), sites, query);
+            return new ResponseSearch(true, hits.size(), paginationResult);
         } catch (ResponseStatusException e) {
             log.error("Ошибка при поиске {} :", e.getMessage());
             throw new RuntimeException(e);
@@ -77,75 +74,78 @@ public class SearchServiceImpl implements SearchService{
 
     }
 
-    private List<PageRelevance> calculatedRelevance(List<Lemma> filterLemma) {
-        List<PageRelevance> resultRelevance = new ArrayList<>();
-        Map<Page, Double> pageToRelevance = new HashMap<>();
-
-        List<Integer> lemmaIds = filterLemma.stream()
-                .mapToInt(Lemma::getId)
-                .boxed()
-                .toList();
-
-        List<Index> indexList = indexRepository.findByLemmaIdIn(lemmaIds);
-        for (Index index : indexList) {
-            Page page = index.getPage();
-            double rank = index.getRank();
-            pageToRelevance.put(page, pageToRelevance.getOrDefault(page, 0.0) + rank);
-        }
-
-        double maxAbsoluteRelevance = pageToRelevance.values().stream()
-                .mapToDouble(Double::doubleValue)
-                .max()
-                .orElse(0.1);
+    private record PageHit(int pageId, double relevance) {
+    }
 
-        for (Map.Entry<Page, Double> entry : pageToRelevance.entrySet()) {
-            Page page = entry.getKey();
-            double absoluteRelevance = entry.getValue();
-            double relativeRelevance = absoluteRelevance / maxAbsoluteRelevance;
-            resultRelevance.add(new PageRelevance(page, absoluteRelevance, relativeRelevance));
+    /**
+     * Страницы сайта, на которых есть все леммы запроса, с суммой рангов лемм.
+     * Списки пересекаются начиная с самой редкой леммы.
+     */
+    private Postings matchingPages(Site site, List<String> lemmas) {
+        Postings pages = null;
+        for (String lemma : lemmas) {
+            Postings lemmaPages = indexStorage.postings(site.getId(), lemma);
+            pages = pages == null ? lemmaPages : pages.intersect(lemmaPages);
+            if (pages.size() == 0) {
+                break;
+            }
         }
+        return pages;
+    }
 
+    /**
+     * Загружает из БД только страницы, попавшие на запрошенную страницу выдачи, и только поля для выдачи:
+     * сжатый HTML и ссылки страниц не читаются.
+     */
+    private List<PageRelevance> calculatedRelevance(List<PageHit> hits, double maxAbsoluteRelevance) {
+        Map<Integer, PageSummary> pages = hits.isEmpty() ? Map.of()
+                : pageRepository.findSummariesByIdIn(hits.stream().map(PageHit::pageId).toList()).stream()
+                .collect(Collectors.toMap(PageSummary::id, page -> page));
+        List<PageRelevance> resultRelevance = new ArrayList<>();
+        for (PageHit hit : hits) {
+            PageSummary page = pages.get(hit.pageId());
+            if (page != null) {
+                resultRelevance.add(new PageRelevance(page, hit.relevance(), hit.relevance() / maxAbsoluteRelevance));
+            }
+        }
         return resultRelevance;
     }
 
-    private List<Lemma> calculatingLemmasOnPages(Set<String> lemmas, Site site) {
-        long totalPages = pageRepository.count();
+    private List<String> calculatingLemmasOnPages(Set<String> lemmas, List<Site> sites) {
+        long totalPages = sites.stream().mapToLong(site -> indexStorage.pageCount(site.getId())).sum();
+        if (totalPages == 0) {
+            return List.of();
+        }
         double threshold = 0.7;
-        Map<String, Lemma> bestLemmas = new HashMap<>();
-
-        for (String lemma1 : lemmas) {
-            List<Lemma> lemmaList = site == null ? lemmaRepository.findByLemma(lemma1): lemmaRepository.findByLemmaToSiteId(lemma1, site);
-
-            for (Lemma currentLemma : lemmaList) {
-                if (currentLemma != null) {
-                    long countPageToLemma = currentLemma.getFrequency();
-                    double lemmaTotalPages = countPageToLemma/totalPages;
-                    if (lemmaTotalPages <= threshold) {
-                        bestLemmas.merge(
-                                currentLemma.getLemma(),
-                                currentLemma,
-                                (oldValue, newValue) -> oldValue.getFrequency() > newValue.getFrequency() ? oldValue : newValue
-                        );
-                    }
+        Map<String, Long> bestLemmas = new HashMap<>();
+
+        for (String lemma : lemmas) {
+            long countPageToLemma = sites.stream().mapToLong(site -> indexStorage.frequency(site.getId(), lemma)).sum();
+            if (countPageToLemma > 0) {
+                double lemmaTotalPages = (double) countPageToLemma / totalPages;
+                if (lemmaTotalPages <= threshold) {
+                    bestLemmas.put(lemma, countPageToLemma);
                 }
             }
         }
-        return bestLemmas.values().stream().
-                sorted(Comparator.comparing(Lemma::getFrequency).reversed()).
+        return bestLemmas.entrySet().stream().
+                sorted(Map.Entry.comparingByValue()).
+                map(Map.Entry::getKey).
                 collect(Collectors.toList());
     }
 
-    private List<ResultSearch> createdRequest(List<PageRelevance> pageRelevance, String query) {
+    private List<ResultSearch> createdRequest(List<PageRelevance> pageRelevance, List<Site> sites, String query) {
+        Map<Integer, Site> sitesById = sites.stream().collect(Collectors.toMap(Site::getId, site -> site));
         return pageRelevance.stream()
                 .map(page -> {
-                    String url = page.page().getSite().getUrl();
-                    String nameUrl = page.page().getSite().getName();
-                    String uri = page.page().getPath();
+                    Site site = sitesById.get(page.page().siteId());
+                    String url = site.getUrl();
+                    String nameUrl = site.getName();
+                    String uri = page.page().path();
 
-                    Document document = Jsoup.parse(page.page().getContent());
-                    String title = document.title();
+                    String title = Objects.requireNonNullElse(page.page().title(), "");
 
-                    String snippet = SnippetGenerator.generatedSnippet(query, page.page().getContent());
+                    String snippet = SnippetGenerator.generatedSnippet(query, Objects.requireNonNullElse(page.page().text(), ""));
 
                     Double relevance = page.relativeRelevance();
 
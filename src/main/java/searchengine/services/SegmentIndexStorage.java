@@ -0,0 +1,272 @@
+package searchengine.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import searchengine.dto.Postings;
+import searchengine.mapping.IndexSegment;
+import searchengine.mapping.PostingBlock;
+import searchengine.model.Site;
+import searchengine.model.Status;
+import searchengine.repositories.SiteRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Индекс для поиска хранится в файлах {@link IndexSegment}, по одному на действующий сайт,
+ * и читается без обращения к MySQL. Сегмент строится выгрузкой индекса сайта из MySQL после
+ * каждой завершённой индексации и заменяет предыдущий целиком; пока идёт индексация, поиск
+ * видит данные сайта на момент прошлой. Сайт, у которого сегмента нет (первая индексация,
+ * ошибка выгрузки), ищется по MySQL через {@link DatabaseIndexStorage}. При создании открываются
+ * уже выгруженные сегменты, а недостающие сегменты проиндексированных сайтов строятся в фоне
+ * после запуска приложения, чтобы выгрузка не задерживала старт. Переиндексация отдельной
+ * страницы не выгружает сайт заново: его сегмент удаляется, поиск по сайту идёт через MySQL,
+ * а новый сегмент строится один раз, когда страницы сайта не менялись rebuildDelayMs,
+ * или после следующей индексации сайта.
+ */
+@Slf4j
+public class SegmentIndexStorage implements IndexStorage {
+    private final JdbcTemplate jdbcTemplate;
+    private final SiteRepository siteRepository;
+    private final Path directory;
+    private final IndexStorage fallback;
+    private final long rebuildDelayMs;
+    private final Map<Integer, IndexSegment> segments = new ConcurrentHashMap<>();
+    /**
+     * Число изменений страниц сайта: выгрузка, во время которой оно выросло, устарела.
+     */
+    private final Map<Integer, Long> pageChanges = new ConcurrentHashMap<>();
+    private final Map<Integer, ScheduledFuture<?>> rebuilds = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService rebuilder = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "segment-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SegmentIndexStorage(JdbcTemplate jdbcTemplate, SiteRepository siteRepository, Path directory, long rebuildDelayMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.siteRepository = siteRepository;
+        this.directory = directory;
+        this.rebuildDelayMs = rebuildDelayMs;
+        this.fallback = new DatabaseIndexStorage(jdbcTemplate);
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось создать каталог сегментов индекса " + directory, e);
+        }
+        for (Site site : siteRepository.findLive()) {
+            Path file = segmentFile(site.getId());
+            if (Files.exists(file)) {
+                try {
+                    segments.put(site.getId(), IndexSegment.open(file));
+                } catch (IOException e) {
+                    log.error("Сегмент индекса сайта {} повреждён и будет построен заново: {}", site.getUrl(), e.getMessage());
+                }
+            }
+        }
+        log.info("Открыто сегментов индекса: {} в каталоге {}", segments.size(), directory.toAbsolutePath());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildMissingSegments() {
+        Thread builder = new Thread(() -> {
+            for (Site site : siteRepository.findLive()) {
+                if (site.getStatus() == Status.INDEXED && !segments.containsKey(site.getId())) {
+                    siteIndexed(site);
+                }
+            }
+        }, "segment-export");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    @Override
+    public int frequency(int siteId, String lemma) {
+        IndexSegment segment = segments.get(siteId);
+        return segment == null ? fallback.frequency(siteId, lemma) : segment.frequency(lemma);
+    }
+
+    @Override
+    public Postings postings(int siteId, String lemma) {
+        IndexSegment segment = segments.get(siteId);
+        return segment == null ? fallback.postings(siteId, lemma) : segment.postings(lemma);
+    }
+
+    @Override
+    public int pageCount(int siteId) {
+        IndexSegment segment = segments.get(siteId);
+        return segment == null ? fallback.pageCount(siteId) : segment.pageCount();
+    }
+
+    /**
+     * Выгружает индекс сайта в новый сегмент; при ошибке остаётся прежний сегмент.
+     */
+    @Override
+    public void siteIndexed(Site site) {
+        ScheduledFuture<?> rebuild = rebuilds.remove(site.getId());
+        if (rebuild != null) {
+            rebuild.cancel(false);
+        }
+        build(site);
+    }
+
+    /**
+     * Сегмент сайта устарел: он удаляется, чтобы поиск читал сайт из MySQL, и перестройка
+     * откладывается на rebuildDelayMs после последнего изменения. Не ждёт идущую выгрузку.
+     */
+    @Override
+    public void pageIndexed(Site site) {
+        int siteId = site.getId();
+        pageChanges.merge(siteId, 1L, Long::sum);
+        if (segments.remove(siteId) != null) {
+            deleteSegmentFile(siteId);
+        }
+        ScheduledFuture<?> previous = rebuilds.put(siteId, rebuilder.schedule(() -> build(site),
+                rebuildDelayMs, TimeUnit.MILLISECONDS));
+        if (previous != null) {
+            previous.cancel(false);
+        }
+    }
+
+    private synchronized void build(Site site) {
+        Path file = segmentFile(site.getId());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        long start = System.nanoTime();
+        long changes = pageChanges.getOrDefault(site.getId(), 0L);
+        try {
+            export(site.getId(), temp);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            IndexSegment segment = IndexSegment.open(file);
+            segments.put(site.getId(), segment);
+            if (pageChanges.getOrDefault(site.getId(), 0L) != changes) {
+                // страница изменилась во время выгрузки; перестройку уже запланировал pageIndexed
+                segments.remove(site.getId());
+                deleteSegmentFile(site.getId());
+                return;
+            }
+            log.info("Сайт {}: построен сегмент индекса, лемм {}, страниц {}, {} байт за {} мс", site.getUrl(),
+                    segment.lemmaCount(), segment.pageCount(), Files.size(file),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException | RuntimeException e) {
+            log.error("Ошибка построения сегмента индекса сайта {}: {}", site.getUrl(), e.getMessage());
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // временный файл перезапишется при следующей выгрузке
+            }
+        }
+    }
+
+    @Override
+    public synchronized void siteDropped(int siteId) {
+        ScheduledFuture<?> rebuild = rebuilds.remove(siteId);
+        if (rebuild != null) {
+            rebuild.cancel(false);
+        }
+        segments.remove(siteId);
+        deleteSegmentFile(siteId);
+    }
+
+    private void deleteSegmentFile(int siteId) {
+        try {
+            Files.deleteIfExists(segmentFile(siteId));
+        } catch (IOException e) {
+            log.error("Ошибка удаления сегмента индекса сайта с id {}: {}", siteId, e.getMessage());
+        }
+    }
+
+    private Path segmentFile(int siteId) {
+        return directory.resolve("site-" + siteId + ".seg");
+    }
+
+    private void export(int siteId, Path target) throws IOException {
+        Integer pageCount = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM page WHERE site_id = ?", Integer.class, siteId);
+        try (IndexSegment.Writer writer = new IndexSegment.Writer(target, siteId, pageCount == null ? 0 : pageCount)) {
+            stream("SELECT id, lemma, frequency FROM lemma WHERE site_id = ?", siteId,
+                    rs -> writer.lemma(rs.getInt(1), rs.getString(2), rs.getInt(3)));
+            LemmaPostings lemmaPostings = new LemmaPostings(writer);
+            stream("SELECT lemma_id, postings FROM posting_block WHERE site_id = ? ORDER BY lemma_id, first_page_id", siteId,
+                    rs -> lemmaPostings.add(rs.getInt(1), rs.getBytes(2)));
+            lemmaPostings.flush();
+            writer.finish();
+        }
+    }
+
+    /**
+     * Собирает блоки одной леммы в упорядоченный список страниц: блоки, записанные разными
+     * пачками индексации, могут пересекаться по id страниц.
+     */
+    private static final class LemmaPostings {
+        private final IndexSegment.Writer writer;
+        private int lemmaId;
+        private Postings.Builder postings;
+
+        private LemmaPostings(IndexSegment.Writer writer) {
+            this.writer = writer;
+        }
+
+        private void add(int blockLemmaId, byte[] block) throws IOException {
+            if (postings == null || blockLemmaId != lemmaId) {
+                flush();
+                lemmaId = blockLemmaId;
+                postings = new Postings.Builder();
+            }
+            PostingBlock.decodePostings(block, postings);
+        }
+
+        private void flush() throws IOException {
+            if (postings == null) {
+                return;
+            }
+            Postings built = postings.build();
+            for (int i = 0; i < built.size(); i++) {
+                writer.posting(lemmaId, built.pageIds()[i], built.ranks()[i]);
+            }
+            postings = null;
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowHandler {
+        void accept(ResultSet rs) throws SQLException, IOException;
+    }
+
+    /**
+     * Читает результат построчно, не загружая его в память целиком (потоковый режим Connector/J).
+     */
+    private void stream(String sql, int siteId, RowHandler handler) throws IOException {
+        IOException failure = jdbcTemplate.execute((ConnectionCallback<IOException>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY)) {
+                statement.setFetchSize(Integer.MIN_VALUE);
+                statement.setInt(1, siteId);
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        handler.accept(rs);
+                    }
+                }
+                return null;
+            } catch (IOException e) {
+                return e;
+            }
+        });
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
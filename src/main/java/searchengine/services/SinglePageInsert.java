@@ -1,46 +1,60 @@
 package searchengine.services;
 
 import lombok.RequiredArgsConstructor;
-import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Isolation;
-import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
-import searchengine.dto.ResponseStatusException;
-import searchengine.model.Index;
-import searchengine.model.Lemma;
+import searchengine.mapping.PositionList;
 import searchengine.model.Page;
 import searchengine.model.Site;
-import searchengine.repositories.IndexRepository;
-import searchengine.repositories.LemmaRepository;
-import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
 
-
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+
 @Service
 @RequiredArgsConstructor
-@Transactional(propagation = Propagation.REQUIRED, isolation = Isolation.SERIALIZABLE)
 public class SinglePageInsert {
 
     private static final Logger logger = LoggerFactory.getLogger(IndexingService.class);
     private final SiteRepository siteRepository;
-    private final PageRepository pageRepository;
-    private final IndexRepository indexRepository;
-    private final LemmaRepository lemmaRepository;
+    private final BatchPageInsert batchPageInsert;
+    private final JdbcTemplate jdbcTemplate;
 
-    public void singlePageInsert(Site site, Page page, Pair<List<Lemma>, List<Index>> lemmaAndIndex) {
-        try {
-            siteRepository.save(site);
-            pageRepository.save(page);
-            lemmaRepository.saveAll(lemmaAndIndex.getLeft());
-            indexRepository.saveAll(lemmaAndIndex.getRight());
-            logger.info("Сохранение страницы и её метаданных завершилось.");
-        } catch (ResponseStatusException e) {
-            logger.error("Ошибка при сохранении страницы: {}", e.getMessage());
+    /**
+     * Сохраняет страницу или заменяет уже проиндексированную страницу сайта с тем же путём.
+     * Частоты лемм меняются в БД атомарно: прежние леммы страницы (page.lemma_ids) уменьшают их
+     * через UPDATE, новые увеличивают через upsert по ключу (site_id, lemma), поэтому
+     * существующие леммы переиспользуются, а параллельные обновления страниц не теряются
+     * и не требуют SERIALIZABLE. Строка страницы сначала создаётся или блокируется upsert'ом
+     * по уникальному ключу (site_id, path): параллельный вызов для того же пути ждёт фиксации
+     * и читает уже новые page.lemma_ids, поэтому страница не дублируется, а частоты не меняются
+     * дважды. Загрузка и лемматизация выполняются до транзакции.
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public void singlePageInsert(Site site, Page page, Map<String, PositionList> lemmas) {
+        siteRepository.save(site);
+        page.setSite(site);
+        List<Integer> oldLemmaIds = new ArrayList<>();
+        jdbcTemplate.update("INSERT INTO page (path, code, site_id) VALUES (?, 0, ?) ON DUPLICATE KEY UPDATE id = id",
+                page.getPath(), site.getId());
+        jdbcTemplate.query("SELECT id, lemma_ids FROM page WHERE site_id = ? AND path = ? FOR UPDATE", rs -> {
+            page.setId(rs.getInt(1));
+            Arrays.stream(PositionList.decode(rs.getBytes(2))).forEach(oldLemmaIds::add);
+        }, site.getId(), page.getPath());
+        LemmaDictionary dictionary = new LemmaDictionary(site, List.of());
+        batchPageInsert.insertBatch(site, List.of(dictionary.analyzed(page, lemmas)), dictionary);
+        if (!oldLemmaIds.isEmpty()) {
+            int unused = jdbcTemplate.update("DELETE FROM lemma WHERE frequency <= 0 AND id IN ("
+                    + String.join(",", Collections.nCopies(oldLemmaIds.size(), "?")) + ")", oldLemmaIds.toArray());
+            logger.info("Удалено лемм, которые больше не встречаются на сайте: {}", unused);
         }
+        logger.info("Сохранение страницы и её метаданных завершилось.");
     }
 }
-
@@ -0,0 +1,70 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.model.Site;
+import searchengine.repositories.SiteRepository;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Полная переиндексация без простоя: новое поколение данных сайта строится под отдельной
+ * строкой site с staging = true и одной транзакцией подменяет действующую. Данные старого
+ * поколения удаляются запросами по site_id порциями, сущности в память не загружаются.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SiteSwap {
+    private static final int DELETE_CHUNK = 5000;
+    private final SiteRepository siteRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final IndexStorage indexStorage;
+
+    /**
+     * Делает теневую копию действующим сайтом, а прежний сайт - скрытым от поиска.
+     */
+    @Transactional
+    public void swap(Site live, Site staging) {
+        live.setStaging(true);
+        staging.setStaging(false);
+        siteRepository.save(live);
+        siteRepository.save(staging);
+    }
+
+    /**
+     * Удаляет сайт со всеми страницами, блоками списков страниц, леммами и контрольной точкой обхода.
+     */
+    public void drop(Site site) {
+        int siteId = site.getId();
+        jdbcTemplate.update("DELETE FROM crawl_checkpoint WHERE site_id = ?", siteId);
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update("DELETE FROM posting_block WHERE site_id = ? LIMIT " + DELETE_CHUNK, siteId);
+        } while (deleted > 0);
+        int pages = 0;
+        List<Integer> pageIds = nextPages(siteId);
+        while (!pageIds.isEmpty()) {
+            String ids = String.join(",", Collections.nCopies(pageIds.size(), "?"));
+            jdbcTemplate.update("DELETE FROM page WHERE id IN (" + ids + ")", pageIds.toArray());
+            pages += pageIds.size();
+            pageIds = nextPages(siteId);
+        }
+        int lemmas = 0;
+        do {
+            deleted = jdbcTemplate.update("DELETE FROM lemma WHERE site_id = ? LIMIT " + DELETE_CHUNK, siteId);
+            lemmas += deleted;
+        } while (deleted > 0);
+        jdbcTemplate.update("DELETE FROM site WHERE id = ?", siteId);
+        indexStorage.siteDropped(siteId);
+        log.info("Удалено поколение данных сайта {} (id {}): страниц {}, лемм {}", site.getUrl(), siteId, pages, lemmas);
+    }
+
+    private List<Integer> nextPages(int siteId) {
+        return jdbcTemplate.queryForList("SELECT id FROM page WHERE site_id = ? LIMIT " + DELETE_CHUNK, Integer.class, siteId);
+    }
+}
@@ -2,6 +2,7 @@ package searchengine.services;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.config.Website;
 import searchengine.config.SitesList;
 import searchengine.dto.statistics.DetailedStatisticsItem;
@@ -25,13 +26,15 @@ public class StatisticsServiceImpl implements StatisticsService {
     private final LemmaRepository lemmaRepository;
     private final SiteRepository siteRepository;
     private final SitesList sites;
+    private final IndexingProgress indexingProgress;
 
     @Override
+    @Transactional(readOnly = true)
     public StatisticsResponse getStatistics() {
 
         TotalStatistics total = new TotalStatistics();
         total.setSites(sites.getSites().size());
-        total.setIndexing(true);
+        total.setIndexing(indexingProgress.isIndexing());
         List<DetailedStatisticsItem> detailed = new ArrayList<>();
         List<Website> sitesList = sites.getSites();
         for (int i = 0; i < sitesList.size(); i++) {
@@ -44,6 +47,11 @@ public class StatisticsServiceImpl implements StatisticsService {
             int lemmas = sites == null ? 0 : lemmaRepository.countLemmaToSite(sites.getId());
             item.setPages(pages);
             item.setLemmas(lemmas);
+            IndexingProgress.SiteProgress progress = indexingProgress.get(site.getUrl());
+            if (progress != null) {
+                item.setCommittedPages(progress.getCommittedPages());
+                item.setQueuedUrls(progress.getQueuedUrls());
+            }
             item.setStatus(sites == null ? "Сайт не проиндексирован" : sites.getStatus().toString());
             item.setError(sites == null ? "Сайт не проиндексирован" : sites.getLastError());
             item.setStatusTime(sites == null ? 0 : sites.getStatusTime().getLong(ChronoField.MILLI_OF_SECOND));
@@ -0,0 +1,76 @@
+package searchengine.services;
+
+import java.util.Arrays;
+
+/**
+ * Разбивает текст на слова за один проход без регулярных выражений и промежуточных
+ * копий всего текста. Словом считается непрерывная последовательность букв а-я и a-z
+ * (без учёта регистра), остальные символы - разделители. Слова приводятся к нижнему
+ * регистру; каждое слово получает порядковый номер в тексте, включая короткие слова,
+ * которые не передаются потребителю.
+ */
+final class TextTokenizer {
+
+    /**
+     * Алфавит слова: по нему выбирается анализатор, слова из смеси алфавитов не индексируются.
+     */
+    enum Script {
+        CYRILLIC, LATIN, MIXED
+    }
+
+    @FunctionalInterface
+    interface TokenConsumer {
+        void accept(String token, int position, Script script);
+    }
+
+    private TextTokenizer() {
+    }
+
+    /**
+     * @param minLength слова короче minLength пропускаются, но учитываются в нумерации
+     */
+    static void tokenize(CharSequence text, int minLength, TokenConsumer consumer) {
+        char[] buffer = new char[64];
+        int length = 0;
+        boolean cyrillic = false;
+        boolean latin = false;
+        int position = 0;
+        int size = text.length();
+        for (int i = 0; i <= size; i++) {
+            char c = i < size ? toLowerLetter(text.charAt(i)) : 0;
+            if (c != 0) {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, length * 2);
+                }
+                buffer[length++] = c;
+                if (c >= 'а') {
+                    cyrillic = true;
+                } else {
+                    latin = true;
+                }
+            } else if (length > 0) {
+                if (length >= minLength) {
+                    Script script = cyrillic && latin ? Script.MIXED : cyrillic ? Script.CYRILLIC : Script.LATIN;
+                    consumer.accept(new String(buffer, 0, length), position, script);
+                }
+                position++;
+                length = 0;
+                cyrillic = false;
+                latin = false;
+            }
+        }
+    }
+
+    /**
+     * @return буква в нижнем регистре или 0, если символ не входит в а-я, a-z
+     */
+    private static char toLowerLetter(char c) {
+        if (c >= 'a' && c <= 'z' || c >= 'а' && c <= 'я') {
+            return c;
+        }
+        if (c >= 'A' && c <= 'Z' || c >= 'А' && c <= 'Я') {
+            return (char) (c + 32);
+        }
+        return 0;
+    }
+}
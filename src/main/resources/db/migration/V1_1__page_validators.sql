@@ -0,0 +1,6 @@
+-- Валидаторы условных запросов и хэш содержимого для инкрементальной переиндексации.
+
+ALTER TABLE page
+    ADD COLUMN etag          VARCHAR(255),
+    ADD COLUMN last_modified VARCHAR(64),
+    ADD COLUMN content_hash  CHAR(64);
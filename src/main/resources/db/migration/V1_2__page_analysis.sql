@@ -0,0 +1,6 @@
+-- Результат разбора страницы при обходе: заголовок, текст и исходящие ссылки.
+
+ALTER TABLE page
+    ADD COLUMN title    VARCHAR(512) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci,
+    ADD COLUMN text     MEDIUMTEXT CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci,
+    ADD COLUMN outlinks MEDIUMTEXT;
@@ -0,0 +1,12 @@
+-- Сохранённая очередь обхода сайта для startIndexing?mode=RESUME, см. CrawlCheckpointStore.
+
+CREATE TABLE crawl_checkpoint (
+    id         INT         NOT NULL AUTO_INCREMENT,
+    site_id    INT         NOT NULL,
+    frontier   LONGTEXT    NOT NULL,
+    visited    LONGBLOB    NOT NULL,
+    updated_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT crawl_checkpoint_site UNIQUE (site_id),
+    CONSTRAINT crawl_checkpoint_site_fk FOREIGN KEY (site_id) REFERENCES site (id)
+) ENGINE = InnoDB;
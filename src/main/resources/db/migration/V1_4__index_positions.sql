@@ -0,0 +1,3 @@
+-- Позиции вхождений леммы на странице (PositionList); у строк, записанных раньше, их нет.
+
+ALTER TABLE indexes ADD COLUMN positions BLOB;
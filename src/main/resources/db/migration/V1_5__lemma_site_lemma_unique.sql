@@ -0,0 +1,59 @@
+-- Одна строка на лемму сайта: на этот ключ опирается upsert частот лемм (ON DUPLICATE KEY UPDATE).
+-- Прежний indexPage мог завести вторую строку для уже известной леммы сайта, поэтому сначала
+-- дубликаты сливаются в строку с наименьшим id: частоты складываются, строки индекса
+-- переносятся на неё, а если страница оказалась дважды в индексе одной леммы, лишние строки
+-- удаляются и частота уменьшается на их число. Сравнение лемм - по сопоставлению столбца,
+-- как и в уникальном ключе.
+
+CREATE TABLE lemma_merge (
+    id      INT NOT NULL,
+    kept_id INT NOT NULL,
+    PRIMARY KEY (id),
+    KEY lemma_merge_kept (kept_id)
+) ENGINE = InnoDB;
+
+INSERT INTO lemma_merge (id, kept_id)
+SELECT l.id, k.kept_id
+FROM lemma l
+JOIN (SELECT site_id, lemma, MIN(id) AS kept_id
+      FROM lemma
+      WHERE site_id IS NOT NULL
+      GROUP BY site_id, lemma
+      HAVING COUNT(*) > 1) k ON k.site_id = l.site_id AND k.lemma = l.lemma
+WHERE l.id <> k.kept_id;
+
+UPDATE lemma kept
+JOIN (SELECT m.kept_id, SUM(l.frequency) AS frequency
+      FROM lemma_merge m
+      JOIN lemma l ON l.id = m.id
+      GROUP BY m.kept_id) merged ON merged.kept_id = kept.id
+SET kept.frequency = kept.frequency + merged.frequency;
+
+UPDATE indexes i
+JOIN lemma_merge m ON m.id = i.lemma_id
+SET i.lemma_id = m.kept_id;
+
+CREATE TABLE index_merge (
+    index_id INT NOT NULL,
+    lemma_id INT NOT NULL,
+    PRIMARY KEY (index_id)
+) ENGINE = InnoDB;
+
+INSERT INTO index_merge (index_id, lemma_id)
+SELECT DISTINCT i.index_id, i.lemma_id
+FROM indexes i
+JOIN indexes earlier ON earlier.lemma_id = i.lemma_id AND earlier.page_id = i.page_id AND earlier.index_id < i.index_id
+WHERE i.lemma_id IN (SELECT kept_id FROM lemma_merge);
+
+UPDATE lemma l
+JOIN (SELECT lemma_id, COUNT(*) AS removed FROM index_merge GROUP BY lemma_id) d ON d.lemma_id = l.id
+SET l.frequency = l.frequency - d.removed;
+
+DELETE i FROM indexes i JOIN index_merge m ON m.index_id = i.index_id;
+
+DELETE l FROM lemma l JOIN lemma_merge m ON m.id = l.id;
+
+DROP TABLE index_merge;
+DROP TABLE lemma_merge;
+
+ALTER TABLE lemma ADD CONSTRAINT lemma_site_lemma UNIQUE (site_id, lemma);
@@ -0,0 +1,3 @@
+-- Теневая копия сайта при полной переиндексации (startIndexing?mode=FULL).
+
+ALTER TABLE site ADD COLUMN staging BIT(1) NOT NULL DEFAULT 0;
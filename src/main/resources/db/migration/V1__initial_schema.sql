@@ -0,0 +1,43 @@
+-- Схема, которую до перехода на миграции создавал ddl-auto: update (DDL Hibernate 5.6, MySQL8Dialect).
+-- Существующие базы помечаются этой версией без выполнения скрипта (baseline-on-migrate),
+-- всё, что добавлено позже, приходит следующими миграциями.
+
+create table site (
+    id          integer      not null auto_increment,
+    last_error  TEXT,
+    name        VARCHAR(255) not null,
+    status      ENUM('INDEXING', 'INDEXED', 'FAILED') not null,
+    status_time datetime(6)  not null,
+    url         VARCHAR(255) not null,
+    primary key (id)
+) engine = InnoDB;
+
+create table page (
+    id      integer      not null auto_increment,
+    code    integer      not null,
+    content MEDIUMTEXT CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci,
+    path    VARCHAR(255) not null,
+    site_id integer      not null,
+    primary key (id)
+) engine = InnoDB;
+
+create table lemma (
+    id        integer      not null auto_increment,
+    frequency integer      not null,
+    lemma     VARCHAR(255) not null,
+    site_id   integer,
+    primary key (id)
+) engine = InnoDB;
+
+create table indexes (
+    index_id integer not null auto_increment,
+    runk     float   not null,
+    lemma_id integer,
+    page_id  integer,
+    primary key (index_id)
+) engine = InnoDB;
+
+alter table page add constraint FKj2jx0gqa4h7wg8ls0k3y221h2 foreign key (site_id) references site (id);
+alter table lemma add constraint FKfbq251d28jauqlxirb1k2cjag foreign key (site_id) references site (id);
+alter table indexes add constraint FKt7po9bhpt3of5q8lkv9yhmttl foreign key (lemma_id) references lemma (id);
+alter table indexes add constraint FK3bh7vv0yelwb682rtmjnw15bv foreign key (page_id) references page (id);
@@ -0,0 +1,16 @@
+-- Индексы под запросы поиска и индексации.
+
+-- SiteRepository.findByUrl: url + staging
+CREATE INDEX site_url_staging ON site (url, staging);
+
+-- PageRepository.existsByPath / deletePageByPath ищут по пути без сайта,
+-- findPageStatesBySite и countPagesToSite - по сайту
+CREATE INDEX page_path ON page (path);
+CREATE INDEX page_site_path ON page (site_id, path);
+
+-- LemmaRepository.findByLemma по всем сайтам; покрывает id, lemma, site_id, frequency
+CREATE INDEX lemma_lemma_site_frequency ON lemma (lemma, site_id, frequency);
+
+-- IndexRepository.findPagesByLemma / findByLemmaIdIn: от леммы к страницам и рангу без чтения строки;
+-- удаление по page_id использует индекс внешнего ключа indexes -> page
+CREATE INDEX indexes_lemma_page_rank ON indexes (lemma_id, page_id, runk);
@@ -0,0 +1,6 @@
+-- HTML страниц хранится в формате COMPRESS() (см. CompressedTextConverter).
+
+ALTER TABLE page ADD COLUMN content_compressed MEDIUMBLOB;
+UPDATE page SET content_compressed = COMPRESS(content) WHERE content IS NOT NULL;
+ALTER TABLE page DROP COLUMN content;
+ALTER TABLE page RENAME COLUMN content_compressed TO content;
@@ -0,0 +1,20 @@
+-- Списки страниц лемм хранятся блоками до 1024 страниц (см. PostingBlock) вместо строки
+-- на каждую пару страница-лемма; id лемм страницы хранятся в самой странице.
+
+CREATE TABLE posting_block (
+    id            INT        NOT NULL AUTO_INCREMENT,
+    site_id       INT        NOT NULL,
+    lemma_id      INT        NOT NULL,
+    first_page_id INT        NOT NULL,
+    last_page_id  INT        NOT NULL,
+    page_count    INT        NOT NULL,
+    postings      MEDIUMBLOB NOT NULL,
+    positions     MEDIUMBLOB NOT NULL,
+    PRIMARY KEY (id),
+    KEY posting_block_lemma_page (lemma_id, first_page_id),
+    KEY posting_block_site_lemma (site_id, lemma_id),
+    CONSTRAINT posting_block_site_fk FOREIGN KEY (site_id) REFERENCES site (id),
+    CONSTRAINT posting_block_lemma_fk FOREIGN KEY (lemma_id) REFERENCES lemma (id)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+ALTER TABLE page ADD COLUMN lemma_ids BLOB;
@@ -0,0 +1,59 @@
+package db.migration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import searchengine.TestDatabase;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Миграция 7 приводит пути страниц, сохранённые до UrlCanonicalizer, к каноническому виду
+ * и сливает страницы, пути которых совпали.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class CanonicalPagePathsMigrationTest {
+
+    @Test
+    void canonicalizesOldPathsAndMergesDuplicates() {
+        DataSource dataSource = TestDatabase.create("6");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        int site = site(jdbcTemplate, "https://a.ru/");
+        int rootOld = page(jdbcTemplate, site, "");
+        int root = page(jdbcTemplate, site, "/");
+        int newsOld = page(jdbcTemplate, site, "news/");
+        int query = page(jdbcTemplate, site, "catalog?utm_source=x&b=2&a=1");
+        int upperCase = page(jdbcTemplate, site, "/News");
+        int blog = site(jdbcTemplate, "https://b.ru/blog");
+        int relativeToSite = page(jdbcTemplate, blog, "/x/");
+        int fromOrigin = page(jdbcTemplate, blog, "/blog/y");
+
+        TestDatabase.migrate(dataSource, null);
+
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM page WHERE id = ?", Integer.class, rootOld)).isEmpty();
+        assertThat(path(jdbcTemplate, root)).isEqualTo("/");
+        assertThat(path(jdbcTemplate, newsOld)).isEqualTo("/news");
+        assertThat(path(jdbcTemplate, query)).isEqualTo("/catalog?a=1&b=2");
+        assertThat(path(jdbcTemplate, upperCase)).isEqualTo("/News");
+        assertThat(path(jdbcTemplate, relativeToSite)).isEqualTo("/blog/x");
+        assertThat(path(jdbcTemplate, fromOrigin)).isEqualTo("/blog/y");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM page", Integer.class)).isEqualTo(6);
+    }
+
+    private static int site(JdbcTemplate jdbcTemplate, String url) {
+        jdbcTemplate.update("INSERT INTO site (status, status_time, url, name) VALUES ('INDEXED', NOW(6), ?, ?)", url, url);
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM site", Integer.class);
+    }
+
+    private static int page(JdbcTemplate jdbcTemplate, int siteId, String path) {
+        jdbcTemplate.update("INSERT INTO page (path, code, site_id) VALUES (?, 200, ?)", path, siteId);
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM page", Integer.class);
+    }
+
+    private static String path(JdbcTemplate jdbcTemplate, int pageId) {
+        return jdbcTemplate.queryForObject("SELECT path FROM page WHERE id = ?", String.class, pageId);
+    }
+}
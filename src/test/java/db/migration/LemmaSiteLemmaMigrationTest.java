@@ -0,0 +1,79 @@
+package db.migration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import searchengine.TestDatabase;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Миграция 1.5 на базе, где прежний indexPage завёл дубликаты лемм сайта.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class LemmaSiteLemmaMigrationTest {
+
+    @Test
+    void mergesDuplicateLemmasBeforeAddingTheKey() {
+        DataSource dataSource = TestDatabase.create("1.4");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        int site = insertSite(jdbcTemplate, "https://a.ru");
+        int otherSite = insertSite(jdbcTemplate, "https://b.ru");
+        int page1 = insertPage(jdbcTemplate, site, "/1");
+        int page2 = insertPage(jdbcTemplate, site, "/2");
+        int page3 = insertPage(jdbcTemplate, site, "/3");
+        int kept = insertLemma(jdbcTemplate, site, "дом", 2);
+        int duplicate = insertLemma(jdbcTemplate, site, "дом", 1);
+        int secondDuplicate = insertLemma(jdbcTemplate, site, "дом", 1);
+        int other = insertLemma(jdbcTemplate, otherSite, "дом", 1);
+        insertIndex(jdbcTemplate, page1, kept);
+        insertIndex(jdbcTemplate, page2, kept);
+        insertIndex(jdbcTemplate, page3, duplicate);
+        // страница 2 попала в индекс и старой, и новой строки леммы
+        insertIndex(jdbcTemplate, page2, secondDuplicate);
+
+        TestDatabase.migrate(dataSource, "1.5");
+
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM lemma WHERE lemma = 'дом' ORDER BY id", Integer.class))
+                .containsExactly(kept, other);
+        assertThat(jdbcTemplate.queryForObject("SELECT frequency FROM lemma WHERE id = ?", Integer.class, kept))
+                .isEqualTo(3);
+        assertThat(jdbcTemplate.queryForObject("SELECT frequency FROM lemma WHERE id = ?", Integer.class, other))
+                .isEqualTo(1);
+        List<Integer> pages = jdbcTemplate.queryForList("SELECT page_id FROM indexes WHERE lemma_id = ? ORDER BY page_id",
+                Integer.class, kept);
+        assertThat(pages).containsExactly(page1, page2, page3);
+        assertThatThrownBy(() -> insertLemma(jdbcTemplate, site, "дом", 1))
+                .hasMessageContaining("lemma_site_lemma");
+    }
+
+    private static int insertSite(JdbcTemplate jdbcTemplate, String url) {
+        jdbcTemplate.update("INSERT INTO site (status, status_time, url, name) VALUES ('INDEXED', NOW(6), ?, ?)", url, url);
+        return lastId(jdbcTemplate, "site");
+    }
+
+    private static int insertPage(JdbcTemplate jdbcTemplate, int siteId, String path) {
+        jdbcTemplate.update("INSERT INTO page (path, code, site_id) VALUES (?, 200, ?)", path, siteId);
+        return lastId(jdbcTemplate, "page");
+    }
+
+    private static int insertLemma(JdbcTemplate jdbcTemplate, int siteId, String lemma, int frequency) {
+        jdbcTemplate.update("INSERT INTO lemma (lemma, frequency, site_id) VALUES (?, ?, ?)", lemma, frequency, siteId);
+        return lastId(jdbcTemplate, "lemma");
+    }
+
+    private static void insertIndex(JdbcTemplate jdbcTemplate, int pageId, int lemmaId) {
+        jdbcTemplate.update("INSERT INTO indexes (page_id, lemma_id, runk) VALUES (?, ?, 1)", pageId, lemmaId);
+    }
+
+    /**
+     * DriverManagerDataSource открывает соединение на каждый запрос, поэтому LAST_INSERT_ID() не подходит.
+     */
+    private static int lastId(JdbcTemplate jdbcTemplate, String table) {
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Integer.class);
+    }
+}
@@ -0,0 +1,78 @@
+package db.migration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import searchengine.TestDatabase;
+import searchengine.mapping.PositionList;
+import searchengine.mapping.PostingBlock;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Миграция 6 удаляет повторы страниц сайта с тем же путём вместе с их записями в posting_block
+ * и частотами лемм, затем добавляет уникальный ключ (site_id, path).
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class PageSitePathUniqueMigrationTest {
+
+    @Test
+    void removesDuplicatePagesAndAddsUniqueKey() {
+        DataSource dataSource = TestDatabase.create("5");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("INSERT INTO site (status, status_time, url, name) VALUES ('INDEXED', NOW(6), 'https://a.ru', 'a')");
+        int siteId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM site", Integer.class);
+        for (String path : List.of("/a", "/a", "/A", "/b")) {
+            jdbcTemplate.update("INSERT INTO page (path, code, site_id) VALUES (?, 200, ?)", path, siteId);
+        }
+        List<Integer> pages = jdbcTemplate.queryForList("SELECT id FROM page ORDER BY id", Integer.class);
+        jdbcTemplate.update("INSERT INTO lemma (lemma, frequency, site_id) VALUES ('дом', 3, ?), ('кот', 1, ?)", siteId, siteId);
+        int common = jdbcTemplate.queryForObject("SELECT id FROM lemma WHERE lemma = 'дом'", Integer.class);
+        int duplicateOnly = jdbcTemplate.queryForObject("SELECT id FROM lemma WHERE lemma = 'кот'", Integer.class);
+        setLemmaIds(jdbcTemplate, pages.get(0), common, duplicateOnly);
+        setLemmaIds(jdbcTemplate, pages.get(1), common);
+        setLemmaIds(jdbcTemplate, pages.get(3), common);
+        appendBlock(jdbcTemplate, siteId, common, pages.get(0), pages.get(1), pages.get(3));
+        appendBlock(jdbcTemplate, siteId, duplicateOnly, pages.get(0));
+
+        TestDatabase.migrate(dataSource, null);
+
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM page ORDER BY id", Integer.class))
+                .containsExactly(pages.get(1), pages.get(2), pages.get(3));
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM lemma", Integer.class)).containsExactly(common);
+        assertThat(jdbcTemplate.queryForObject("SELECT frequency FROM lemma WHERE id = ?", Integer.class, common)).isEqualTo(2);
+        List<Integer> postedPages = new ArrayList<>();
+        jdbcTemplate.query("SELECT first_page_id, last_page_id, page_count, postings, positions FROM posting_block", rs -> {
+            new PostingBlock(rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getBytes(4), rs.getBytes(5)).entries()
+                    .forEach(entry -> postedPages.add(entry.pageId()));
+        });
+        assertThat(postedPages).containsExactly(pages.get(1), pages.get(3));
+        assertThatThrownBy(() -> jdbcTemplate.update("INSERT INTO page (path, code, site_id) VALUES ('/b', 200, ?)", siteId))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    private static void setLemmaIds(JdbcTemplate jdbcTemplate, int pageId, int... lemmaIds) {
+        PositionList encoded = new PositionList();
+        for (int lemmaId : lemmaIds) {
+            encoded.add(lemmaId);
+        }
+        jdbcTemplate.update("UPDATE page SET lemma_ids = ? WHERE id = ?", encoded.encode(), pageId);
+    }
+
+    private static void appendBlock(JdbcTemplate jdbcTemplate, int siteId, int lemmaId, int... pageIds) {
+        List<PostingBlock.Entry> entries = new ArrayList<>();
+        for (int pageId : pageIds) {
+            entries.add(new PostingBlock.Entry(pageId, 1, new byte[0]));
+        }
+        PostingBlock block = PostingBlock.encode(entries);
+        jdbcTemplate.update("INSERT INTO posting_block (site_id, lemma_id, first_page_id, last_page_id, page_count, postings,"
+                        + " positions) VALUES (?, ?, ?, ?, ?, ?, ?)", siteId, lemmaId, block.firstPageId(), block.lastPageId(),
+                block.size(), block.postings(), block.positions());
+    }
+}
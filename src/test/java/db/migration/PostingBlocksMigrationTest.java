@@ -0,0 +1,97 @@
+package db.migration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import searchengine.TestDatabase;
+import searchengine.mapping.PositionList;
+import searchengine.mapping.PostingBlock;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Миграция 5 переносит строки indexes в блоки posting_block и id лемм страниц в page.lemma_ids,
+ * леммы без сайта удаляет.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class PostingBlocksMigrationTest {
+    private static final int PAGES = 1500;
+
+    @Test
+    void convertsIndexRowsToBlocksAndDropsIndexes() {
+        DataSource dataSource = TestDatabase.create("4");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("INSERT INTO site (status, status_time, url, name) VALUES ('INDEXED', NOW(6), 'https://a.ru', 'a')");
+        int siteId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM site", Integer.class);
+        List<Object[]> pages = new ArrayList<>();
+        for (int i = 0; i < PAGES; i++) {
+            pages.add(new Object[]{"/" + i, siteId});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO page (path, code, site_id) VALUES (?, 200, ?)", pages);
+        List<Integer> pageIds = jdbcTemplate.queryForList("SELECT id FROM page ORDER BY id", Integer.class);
+        jdbcTemplate.update("INSERT INTO lemma (lemma, frequency, site_id) VALUES ('дом', ?, ?), ('кот', 2, ?)",
+                PAGES, siteId, siteId);
+        int common = jdbcTemplate.queryForObject("SELECT id FROM lemma WHERE lemma = 'дом'", Integer.class);
+        int rare = jdbcTemplate.queryForObject("SELECT id FROM lemma WHERE lemma = 'кот'", Integer.class);
+        jdbcTemplate.update("INSERT INTO lemma (lemma, frequency, site_id) VALUES ('ничей', 1, NULL)");
+        int orphan = jdbcTemplate.queryForObject("SELECT id FROM lemma WHERE lemma = 'ничей'", Integer.class);
+        List<Object[]> rows = new ArrayList<>();
+        // строки вставляются в обратном порядке страниц: миграция сама упорядочивает их по id
+        for (int i = PAGES - 1; i >= 0; i--) {
+            rows.add(new Object[]{pageIds.get(i), common, 1 + i % 7, positions(i, i + 3)});
+        }
+        rows.add(new Object[]{pageIds.get(10), rare, 2.0f, positions(1, 2)});
+        rows.add(new Object[]{pageIds.get(20), rare, 1.0f, null});
+        rows.add(new Object[]{pageIds.get(11), orphan, 1.0f, positions(4)});
+        jdbcTemplate.batchUpdate("INSERT INTO indexes (page_id, lemma_id, runk, positions) VALUES (?, ?, ?, ?)", rows);
+
+        TestDatabase.migrate(dataSource, null);
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.tables"
+                + " WHERE table_schema = DATABASE() AND table_name = 'indexes'", Integer.class)).isZero();
+        List<PostingBlock> commonBlocks = blocks(jdbcTemplate, common);
+        assertThat(commonBlocks).hasSize(2);
+        assertThat(commonBlocks.get(0).size()).isEqualTo(PostingBlock.MAX_SIZE);
+        assertThat(commonBlocks.get(0).lastPageId()).isLessThan(commonBlocks.get(1).firstPageId());
+        List<PostingBlock.Entry> entries = new ArrayList<>();
+        commonBlocks.forEach(block -> entries.addAll(block.entries()));
+        assertThat(entries).hasSize(PAGES);
+        for (int i = 0; i < PAGES; i++) {
+            assertThat(entries.get(i).pageId()).isEqualTo(pageIds.get(i));
+            assertThat(entries.get(i).rank()).isEqualTo(1 + i % 7);
+            assertThat(PositionList.decode(entries.get(i).positions())).containsExactly(i, i + 3);
+        }
+        List<PostingBlock.Entry> rareEntries = blocks(jdbcTemplate, rare).get(0).entries();
+        assertThat(rareEntries).hasSize(2);
+        assertThat(rareEntries.get(0).pageId()).isEqualTo(pageIds.get(10));
+        assertThat(PositionList.decode(rareEntries.get(0).positions())).containsExactly(1, 2);
+        assertThat(rareEntries.get(1).positions()).isEmpty();
+        assertThat(lemmaIds(jdbcTemplate, pageIds.get(10))).containsExactly(Math.min(common, rare), Math.max(common, rare));
+        assertThat(lemmaIds(jdbcTemplate, pageIds.get(11))).containsExactly(common);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM lemma WHERE id = ?", Integer.class, orphan)).isZero();
+        assertThat(blocks(jdbcTemplate, orphan)).isEmpty();
+    }
+
+    private static List<PostingBlock> blocks(JdbcTemplate jdbcTemplate, int lemmaId) {
+        return jdbcTemplate.query("SELECT first_page_id, last_page_id, page_count, postings, positions FROM posting_block"
+                        + " WHERE lemma_id = ? ORDER BY first_page_id",
+                (rs, n) -> new PostingBlock(rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getBytes(4), rs.getBytes(5)),
+                lemmaId);
+    }
+
+    private static int[] lemmaIds(JdbcTemplate jdbcTemplate, int pageId) {
+        return PositionList.decode(jdbcTemplate.queryForObject("SELECT lemma_ids FROM page WHERE id = ?", byte[].class, pageId));
+    }
+
+    private static byte[] positions(int... at) {
+        PositionList list = new PositionList();
+        for (int position : at) {
+            list.add(position);
+        }
+        return list.encode();
+    }
+}
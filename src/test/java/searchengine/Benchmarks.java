@@ -0,0 +1,108 @@
+package searchengine;
+
+import searchengine.mapping.PageAnalysis;
+import searchengine.mapping.UrlCanonicalizer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Общее для классов *Benchmark (mvn test -Pbenchmark): тексты страниц и замер времени.
+ * Страницы берутся из каталога -Dbenchmark.pages с сохранёнными HTML-страницами сайтов
+ * (текст извлекается тем же PageAnalysis, что и при обходе) или с готовыми .txt,
+ * без него генерируется текст из русских и английских слов со знаками препинания.
+ */
+public final class Benchmarks {
+    private static final String[] RUSSIAN = ("поиск индекс страница сайт документ запрос слово лемма частота текст "
+            + "быстро медленно новый старый большой маленький городской московский работать искать находить "
+            + "читать писать считать и в на по с к о что как это для не но из от до при за или также уже").split(" ");
+    private static final String[] ENGLISH = "search engine index page query java spring the of and".split(" ");
+    private static final String[] SEPARATORS = {" ", " ", " ", ", ", ". ", " - ", "; ", "\n", " (", ") ", " 2024 ", " №5 "};
+    /**
+     * Результат прогона сохраняется сюда, чтобы JIT не выбросил вычисление как неиспользуемое.
+     */
+    private static volatile Object blackhole;
+
+    private Benchmarks() {
+    }
+
+    /**
+     * @param count сколько страниц сгенерировать, если каталог -Dbenchmark.pages не задан
+     */
+    public static List<String> pageTexts(int count) {
+        String directory = System.getProperty("benchmark.pages");
+        if (directory == null || directory.isBlank()) {
+            System.out.printf("Тексты страниц сгенерированы: %d страниц%n", count);
+            return generatedTexts(count);
+        }
+        List<String> texts = new ArrayList<>();
+        UrlCanonicalizer canonicalizer = new UrlCanonicalizer("http://localhost");
+        try (Stream<Path> files = Files.walk(Path.of(directory))) {
+            for (Path file : files.filter(Files::isRegularFile).sorted().toList()) {
+                String name = file.getFileName().toString().toLowerCase();
+                String content = Files.readString(file, StandardCharsets.UTF_8);
+                if (name.endsWith(".html") || name.endsWith(".htm")) {
+                    texts.add(PageAnalysis.analyze(content, "http://localhost/", canonicalizer).text());
+                } else if (name.endsWith(".txt")) {
+                    texts.add(content);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        System.out.printf("Тексты страниц из %s: %d страниц%n", directory, texts.size());
+        return texts;
+    }
+
+    public static List<String> generatedTexts(int count) {
+        Random random = new Random(42);
+        List<String> texts = new ArrayList<>(count);
+        for (int page = 0; page < count; page++) {
+            StringBuilder text = new StringBuilder();
+            int words = 1000 + random.nextInt(3000);
+            for (int i = 0; i < words; i++) {
+                String word = random.nextInt(10) == 0 ? ENGLISH[random.nextInt(ENGLISH.length)]
+                        : RUSSIAN[random.nextInt(RUSSIAN.length)];
+                text.append(random.nextInt(12) == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+                text.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+            }
+            texts.add(text.toString());
+        }
+        return texts;
+    }
+
+    public static long totalChars(List<String> texts) {
+        return texts.stream().mapToLong(String::length).sum();
+    }
+
+    /**
+     * Выполняет task warmups раз без замера, затем rounds раз с замером и печатает медиану.
+     *
+     * @return медиана времени одного прогона в наносекундах
+     */
+    public static long medianNanos(String label, int warmups, int rounds, Supplier<?> task) {
+        for (int i = 0; i < warmups; i++) {
+            blackhole = task.get();
+        }
+        long[] times = new long[rounds];
+        for (int i = 0; i < rounds; i++) {
+            long started = System.nanoTime();
+            blackhole = task.get();
+            times[i] = System.nanoTime() - started;
+        }
+        Arrays.sort(times);
+        long median = times[rounds / 2];
+        System.out.printf("%-40s медиана %8.1f мс (мин %8.1f, макс %8.1f)%n", label, median / 1e6, times[0] / 1e6,
+                times[rounds - 1] / 1e6);
+        return median;
+    }
+}
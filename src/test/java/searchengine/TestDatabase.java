@@ -0,0 +1,63 @@
+package searchengine;
+
+import org.flywaydb.core.Flyway;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import javax.sql.DataSource;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MySQL в контейнере, общий для всех тестов: контейнер запускается при первом обращении,
+ * каждый вызов {@link #create} создаёт в нём отдельную базу со схемой из миграций.
+ * Тестовые классы помечаются {@code @Testcontainers(disabledWithoutDocker = true)}.
+ */
+public final class TestDatabase {
+    private static final MySQLContainer<?> MYSQL = new MySQLContainer<>(DockerImageName.parse("mysql:8.0"))
+            .withUsername("root")
+            .withPassword("test");
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    static {
+        MYSQL.start();
+    }
+
+    private TestDatabase() {
+    }
+
+    /**
+     * @return база со всеми миграциями
+     */
+    public static DataSource create() {
+        return create(null);
+    }
+
+    /**
+     * @param target версия, до которой применяются миграции, null - все
+     */
+    public static DataSource create(String target) {
+        String name = "search_engine_" + DATABASES.incrementAndGet();
+        new JdbcTemplate(dataSource("")).execute("CREATE DATABASE " + name + " CHARACTER SET utf8mb4");
+        DataSource dataSource = dataSource(name);
+        migrate(dataSource, target);
+        return dataSource;
+    }
+
+    /**
+     * Применяет миграции до target (null - все) к уже созданной базе.
+     */
+    public static void migrate(DataSource dataSource, String target) {
+        Flyway.configure()
+                .dataSource(dataSource)
+                .target(target == null ? "latest" : target)
+                .load()
+                .migrate();
+    }
+
+    private static DataSource dataSource(String database) {
+        return new DriverManagerDataSource("jdbc:mysql://" + MYSQL.getHost() + ":" + MYSQL.getMappedPort(3306) + "/"
+                + database + "?useSSL=false&allowPublicKeyRetrieval=true", MYSQL.getUsername(), MYSQL.getPassword());
+    }
+}
@@ -0,0 +1,139 @@
+package searchengine.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.services.ConnectionPoolMetrics;
+
+import javax.sql.DataSource;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Пулы чтения и записи на встроенной H2: транзакции readOnly берут соединение из пула чтения,
+ * остальные запросы - из пула записи, ожидание свободного соединения попадает в ConnectionPoolMetrics.
+ */
+class DataSourceConfigTest {
+    private static final long READ_TIMEOUT_MS = 500;
+    private final ConnectionPoolMetrics metrics = new ConnectionPoolMetrics();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private HikariDataSource read;
+    private HikariDataSource write;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readOnly;
+    private TransactionTemplate readWrite;
+
+    @BeforeEach
+    void setUp() {
+        DataSourceProperties properties = new DataSourceProperties();
+        properties.setUrl("jdbc:h2:mem:routing;DB_CLOSE_DELAY=-1");
+        properties.setUsername("sa");
+        ConnectionPoolSettings settings = new ConnectionPoolSettings();
+        settings.setRead(new PoolSettings(1, 0, READ_TIMEOUT_MS));
+        settings.setWrite(new PoolSettings(2, 0, 5000));
+        DataSourceConfig config = new DataSourceConfig();
+        read = config.readDataSource(properties, settings, metrics);
+        write = config.writeDataSource(properties, settings, metrics);
+        DataSource dataSource = config.dataSource(read, write);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readWrite = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        read.close();
+        write.close();
+    }
+
+    @Test
+    void readOnlyTransactionUsesReadPool() {
+        long writeAcquisitions = acquisitions("write");
+
+        readOnly.executeWithoutResult(status -> {
+            jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+            assertThat(read.getHikariPoolMXBean().getActiveConnections()).isEqualTo(1);
+        });
+
+        assertThat(acquisitions("read")).isEqualTo(1);
+        assertThat(acquisitions("write")).isEqualTo(writeAcquisitions);
+    }
+
+    @Test
+    void writesUseWritePool() {
+        long writeAcquisitions = acquisitions("write");
+
+        readWrite.executeWithoutResult(status -> {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS routed (id INT)");
+            jdbcTemplate.update("INSERT INTO routed (id) VALUES (1)");
+            assertThat(write.getHikariPoolMXBean().getActiveConnections()).isEqualTo(1);
+        });
+        // запрос вне транзакции тоже идёт в пул записи
+        jdbcTemplate.update("DELETE FROM routed");
+
+        assertThat(acquisitions("write")).isEqualTo(writeAcquisitions + 2);
+        assertThat(acquisitions("read")).isZero();
+    }
+
+    @Test
+    void waitForBusyReadPoolIsRecorded() throws Exception {
+        CompletableFuture<Void> holder = holdReadConnection(300);
+
+        readOnly.executeWithoutResult(status -> jdbcTemplate.queryForObject("SELECT 1", Integer.class));
+        holder.get(5, TimeUnit.SECONDS);
+
+        assertThat(acquisitions("read")).isEqualTo(2);
+        assertThat(metrics.metrics().get("read.maxWaitMillis").longValue()).isGreaterThanOrEqualTo(200);
+        assertThat(metrics.metrics().get("read.timeouts").longValue()).isZero();
+    }
+
+    @Test
+    void readPoolTimeoutIsRecorded() throws Exception {
+        CompletableFuture<Void> holder = holdReadConnection(READ_TIMEOUT_MS * 3);
+
+        assertThatThrownBy(() -> readOnly.executeWithoutResult(
+                status -> jdbcTemplate.queryForObject("SELECT 1", Integer.class)))
+                .isInstanceOf(DataAccessException.class);
+        holder.get(5, TimeUnit.SECONDS);
+
+        assertThat(metrics.metrics().get("read.timeouts").longValue()).isEqualTo(1);
+    }
+
+    /**
+     * Занимает единственное соединение пула чтения на holdMillis в другом потоке.
+     */
+    private CompletableFuture<Void> holdReadConnection(long holdMillis) throws InterruptedException {
+        CountDownLatch acquired = new CountDownLatch(1);
+        CompletableFuture<Void> holder = CompletableFuture.runAsync(() -> readOnly.executeWithoutResult(status -> {
+            jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+            acquired.countDown();
+            try {
+                Thread.sleep(holdMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }), executor);
+        assertThat(acquired.await(5, TimeUnit.SECONDS)).isTrue();
+        return holder;
+    }
+
+    private long acquisitions(String pool) {
+        Number acquisitions = metrics.metrics().get(pool + ".acquisitions");
+        return acquisitions == null ? 0 : acquisitions.longValue();
+    }
+}
@@ -0,0 +1,131 @@
+package searchengine.mapping;
+
+import org.junit.jupiter.api.Test;
+import searchengine.Benchmarks;
+import searchengine.config.AppConfigProperties;
+import searchengine.config.Website;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Обход одного и того же сайта через JsoupPageFetcher и HttpClientPageFetcher. Сайт - локальный сервер
+ * со страницами из Benchmarks.pageTexts, сжатием gzip и задержкой ответа, как у удалённого сайта.
+ */
+class FetcherBenchmark {
+    private static final int PAGES = 500;
+    private static final int LINKS_PER_PAGE = 10;
+    private static final long LATENCY_MILLIS = 20;
+    private static final int CONCURRENT_REQUESTS = 16;
+    private static final int SLOW_SITE_PAGES = 100;
+    private static final long SLOW_SITE_LATENCY_MILLIS = 200;
+    private static final int DEFAULT_FETCH_THREADS = 8;
+
+    /**
+     * Оба загрузчика ограничены одинаковым числом одновременных запросов.
+     */
+
+    @Test
+    void jsoupAgainstHttpClient() throws IOException {
+        AppConfigProperties connectionSetting = new AppConfigProperties();
+        connectionSetting.setUserAgent("SearchBot/1.0");
+        connectionSetting.setReferer("http://www.google.com");
+        connectionSetting.setTimeout(10000);
+        connectionSetting.setFetchThreads(CONCURRENT_REQUESTS);
+        ExecutorService parseExecutor = Executors.newFixedThreadPool(4);
+        try (TestHttpServer server = new TestHttpServer(CONCURRENT_REQUESTS)) {
+            fillSite(server, PAGES);
+            server.compressResponses(true);
+            server.latency(LATENCY_MILLIS);
+
+            long jsoup = crawl("Jsoup", server, PAGES, CONCURRENT_REQUESTS, connectionSetting, parseExecutor,
+                    guard -> new JsoupPageFetcher(connectionSetting, guard));
+            long httpClient = crawl("HttpClient", server, PAGES, CONCURRENT_REQUESTS, connectionSetting, parseExecutor,
+                    guard -> new HttpClientPageFetcher(connectionSetting, guard));
+
+            System.out.printf("%d страниц, задержка ответа %d мс: Jsoup %.0f страниц/с, HttpClient %.0f страниц/с%n",
+                    PAGES, LATENCY_MILLIS, PAGES / (jsoup / 1e9), PAGES / (httpClient / 1e9));
+        } finally {
+            parseExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Медленный сайт с настройками по умолчанию: fetch-threads из application.yaml, max-concurrent-requests: 0,
+     * то есть одновременных запросов к хосту столько, сколько по умолчанию у загрузчика. Частота запросов
+     * не ограничена - при requests-per-second: 2 оба загрузчика дают не больше 2 страниц в секунду.
+     */
+    @Test
+    void defaultHostLimitsOnSlowSite() throws IOException {
+        AppConfigProperties connectionSetting = new AppConfigProperties();
+        connectionSetting.setUserAgent("SearchBot/1.0");
+        connectionSetting.setReferer("http://www.google.com");
+        connectionSetting.setTimeout(10000);
+        connectionSetting.setFetchThreads(DEFAULT_FETCH_THREADS);
+        ExecutorService parseExecutor = Executors.newFixedThreadPool(4);
+        try (TestHttpServer server = new TestHttpServer(CONCURRENT_REQUESTS)) {
+            fillSite(server, SLOW_SITE_PAGES);
+            server.compressResponses(true);
+            server.latency(SLOW_SITE_LATENCY_MILLIS);
+
+            long jsoup = crawl("Jsoup", server, SLOW_SITE_PAGES, 0, connectionSetting, parseExecutor,
+                    guard -> new JsoupPageFetcher(connectionSetting, guard));
+            long httpClient = crawl("HttpClient", server, SLOW_SITE_PAGES, 0, connectionSetting, parseExecutor,
+                    guard -> new HttpClientPageFetcher(connectionSetting, guard));
+
+            System.out.printf("%d страниц, задержка ответа %d мс, лимиты хоста по умолчанию: Jsoup %.0f страниц/с,"
+                            + " HttpClient %.0f страниц/с%n", SLOW_SITE_PAGES, SLOW_SITE_LATENCY_MILLIS,
+                    SLOW_SITE_PAGES / (jsoup / 1e9), SLOW_SITE_PAGES / (httpClient / 1e9));
+        } finally {
+            parseExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * @param maxConcurrentRequests max-concurrent-requests сайта, 0 - по умолчанию загрузчика
+     */
+    private static long crawl(String label, TestHttpServer server, int pageCount, int maxConcurrentRequests,
+                              AppConfigProperties connectionSetting, ExecutorService parseExecutor,
+                              Function<ResponseGuard, PageFetcher> fetcherFactory) {
+        return Benchmarks.medianNanos(label, 1, 3, () -> {
+            Set<String> pages = ConcurrentHashMap.newKeySet();
+            try (PageFetcher fetcher = fetcherFactory.apply(new ResponseGuard(connectionSetting))) {
+                Website website = new Website();
+                website.setUrl(server.origin());
+                website.setName("benchmark");
+                website.setMaxConcurrentRequests(maxConcurrentRequests);
+                website.setRequestsPerSecond(10000);
+                new SiteCrawler(website, fetcher, parseExecutor, new AtomicBoolean(true), new ConcurrentHashMap<>(),
+                        KnownPages.none(), page -> pages.add(page.getPath())).crawl();
+            }
+            assertThat(pages).hasSize(pageCount);
+            return pages.size();
+        });
+    }
+
+    /**
+     * Страница i ссылается на следующие LINKS_PER_PAGE страниц, так что обход доходит до всех.
+     */
+    private static void fillSite(TestHttpServer server, int pageCount) {
+        List<String> texts = Benchmarks.pageTexts(pageCount);
+        for (int i = 0; i < pageCount; i++) {
+            StringBuilder body = new StringBuilder("<p>").append(texts.get(i)).append("</p>");
+            for (int link = 1; link <= LINKS_PER_PAGE; link++) {
+                body.append(" <a href=\"").append(path((i + link) % pageCount)).append("\">ссылка</a>");
+            }
+            server.html(path(i), body.toString());
+        }
+    }
+
+    private static String path(int page) {
+        return page == 0 ? "/" : "/page/" + page;
+    }
+}
@@ -0,0 +1,79 @@
+package searchengine.mapping;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import searchengine.config.AppConfigProperties;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Оба загрузчика на одних и тех же ответах дают одинаковый FetchResult: код и тело ошибок 4xx и 5xx
+ * сохраняются, сжатые gzip страницы распаковываются.
+ */
+class PageFetcherTest {
+    private TestHttpServer server;
+    private List<PageFetcher> fetchers;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new TestHttpServer(2);
+        server.html("/", "главная страница");
+        server.html("/missing", 404, "страница не найдена");
+        server.html("/broken", 500, "ошибка сервера");
+        AppConfigProperties connectionSetting = new AppConfigProperties();
+        connectionSetting.setUserAgent("SearchBot/1.0");
+        connectionSetting.setReferer("http://www.google.com");
+        connectionSetting.setTimeout(5000);
+        connectionSetting.setFetchThreads(2);
+        ResponseGuard guard = new ResponseGuard(connectionSetting);
+        fetchers = List.of(new JsoupPageFetcher(connectionSetting, guard), new HttpClientPageFetcher(connectionSetting, guard));
+    }
+
+    @AfterEach
+    void tearDown() {
+        fetchers.forEach(PageFetcher::close);
+        server.close();
+    }
+
+    @Test
+    void errorPagesKeepCodeAndBody() {
+        for (PageFetcher fetcher : fetchers) {
+            FetchResult missing = fetcher.fetch(server.origin() + "/missing").join();
+            FetchResult broken = fetcher.fetch(server.origin() + "/broken").join();
+
+            assertThat(missing.code()).as(fetcher.getClass().getSimpleName()).isEqualTo(404);
+            assertThat(missing.body()).contains("страница не найдена");
+            assertThat(broken.code()).as(fetcher.getClass().getSimpleName()).isEqualTo(500);
+            assertThat(broken.body()).contains("ошибка сервера");
+        }
+    }
+
+    @Test
+    void gzipResponsesAreDecoded() {
+        server.compressResponses(true);
+        for (PageFetcher fetcher : fetchers) {
+            FetchResult page = fetcher.fetch(server.origin() + "/").join();
+
+            assertThat(page.code()).isEqualTo(200);
+            assertThat(page.body()).as(fetcher.getClass().getSimpleName()).contains("главная страница");
+        }
+        for (TestHttpServer.Request request : server.requests()) {
+            assertThat(request.acceptEncoding()).contains("gzip");
+        }
+    }
+
+    @Test
+    void fetchersReturnSameResults() {
+        server.compressResponses(true);
+        for (String path : List.of("/", "/missing", "/broken", "/absent")) {
+            FetchResult jsoup = fetchers.get(0).fetch(server.origin() + path).join();
+            FetchResult httpClient = fetchers.get(1).fetch(server.origin() + path).join();
+
+            assertThat(httpClient).as(path).isEqualTo(jsoup);
+        }
+    }
+}
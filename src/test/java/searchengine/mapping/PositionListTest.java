@@ -0,0 +1,32 @@
+package searchengine.mapping;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PositionListTest {
+
+    @Test
+    void encodeDecodeRoundTrip() {
+        int[] values = {0, 1, 1, 127, 128, 16_383, 16_384, 2_097_152, 268_435_456, Integer.MAX_VALUE};
+        PositionList list = new PositionList();
+        for (int value : values) {
+            list.add(value);
+        }
+
+        assertThat(PositionList.decode(list.encode())).containsExactly(values);
+        assertThat(list.toArray()).containsExactly(values);
+        assertThat(PositionList.decode(new PositionList().encode())).isEmpty();
+        assertThat(PositionList.decode(null)).isEmpty();
+    }
+
+    @Test
+    void smallGapsTakeOneByte() {
+        PositionList list = new PositionList();
+        for (int i = 0; i < 1000; i++) {
+            list.add(i * 3);
+        }
+
+        assertThat(list.encode().length).isEqualTo(1000);
+    }
+}
@@ -0,0 +1,117 @@
+package searchengine.mapping;
+
+import org.junit.jupiter.api.Test;
+import searchengine.dto.Postings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PostingBlockTest {
+
+    @Test
+    void entriesRoundTripThroughEncode() {
+        List<PostingBlock.Entry> entries = List.of(
+                new PostingBlock.Entry(1, 3, positions(0, 5, 9)),
+                new PostingBlock.Entry(2, 0, new byte[0]),
+                // разности больше 2^7, 2^14, 2^21 и 2^28 занимают от 2 до 5 байт
+                new PostingBlock.Entry(200, 1, positions(127)),
+                new PostingBlock.Entry(20_000, 128, positions(128, 16_384)),
+                new PostingBlock.Entry(3_000_000, 1, positions(2_097_152)),
+                new PostingBlock.Entry(Integer.MAX_VALUE, Integer.MAX_VALUE, positions(Integer.MAX_VALUE)));
+
+        PostingBlock block = PostingBlock.encode(entries);
+
+        assertThat(block.firstPageId()).isEqualTo(1);
+        assertThat(block.lastPageId()).isEqualTo(Integer.MAX_VALUE);
+        assertThat(block.size()).isEqualTo(entries.size());
+        assertSameEntries(block.entries(), entries);
+        PostingBlock stored = new PostingBlock(block.firstPageId(), block.lastPageId(), block.size(),
+                block.postings(), block.positions());
+        assertSameEntries(stored.entries(), entries);
+    }
+
+    @Test
+    void missingPositionsAreStoredAsEmpty() {
+        PostingBlock block = PostingBlock.encode(List.of(new PostingBlock.Entry(7, 2, null)));
+
+        assertThat(block.entries().get(0).positions()).isEmpty();
+        assertThat(PositionList.decode(block.entries().get(0).positions())).isEmpty();
+    }
+
+    @Test
+    void splitKeepsOrderAndBlockSize() {
+        List<PostingBlock.Entry> entries = randomEntries(new Random(1), 2500);
+
+        List<PostingBlock> blocks = PostingBlock.split(entries, PostingBlock.MAX_SIZE);
+
+        assertThat(blocks).hasSize(3);
+        List<PostingBlock.Entry> decoded = new ArrayList<>();
+        int previousLast = 0;
+        for (PostingBlock block : blocks) {
+            assertThat(block.size()).isLessThanOrEqualTo(PostingBlock.MAX_SIZE);
+            assertThat(block.firstPageId()).isGreaterThan(previousLast);
+            previousLast = block.lastPageId();
+            decoded.addAll(block.entries());
+        }
+        assertSameEntries(decoded, entries);
+    }
+
+    @Test
+    void decodePostingsMergesOverlappingBlocks() {
+        List<PostingBlock.Entry> entries = randomEntries(new Random(2), 300);
+        List<PostingBlock.Entry> even = new ArrayList<>();
+        List<PostingBlock.Entry> odd = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            (i % 2 == 0 ? even : odd).add(entries.get(i));
+        }
+        Postings.Builder builder = new Postings.Builder();
+
+        // блоки разных пачек индексации пересекаются по диапазону id
+        PostingBlock.decodePostings(PostingBlock.encode(odd).postings(), builder);
+        PostingBlock.decodePostings(PostingBlock.encode(even).postings(), builder);
+        Postings postings = builder.build();
+
+        assertThat(postings.size()).isEqualTo(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            assertThat(postings.pageIds()[i]).isEqualTo(entries.get(i).pageId());
+            assertThat(postings.ranks()[i]).isEqualTo((float) entries.get(i).rank());
+        }
+    }
+
+    private static List<PostingBlock.Entry> randomEntries(Random random, int count) {
+        List<PostingBlock.Entry> entries = new ArrayList<>(count);
+        int pageId = 0;
+        for (int i = 0; i < count; i++) {
+            pageId += 1 + random.nextInt(i % 50 == 0 ? 100_000 : 20);
+            int[] at = new int[1 + random.nextInt(5)];
+            int position = 0;
+            for (int j = 0; j < at.length; j++) {
+                position += random.nextInt(500);
+                at[j] = position;
+            }
+            entries.add(new PostingBlock.Entry(pageId, at.length, positions(at)));
+        }
+        return entries;
+    }
+
+    private static byte[] positions(int... at) {
+        PositionList list = new PositionList();
+        for (int position : at) {
+            list.add(position);
+        }
+        return list.encode();
+    }
+
+    private static void assertSameEntries(List<PostingBlock.Entry> actual, List<PostingBlock.Entry> expected) {
+        assertThat(actual).hasSize(expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i).pageId()).isEqualTo(expected.get(i).pageId());
+            assertThat(actual.get(i).rank()).isEqualTo(expected.get(i).rank());
+            assertThat(PositionList.decode(actual.get(i).positions()))
+                    .containsExactly(PositionList.decode(expected.get(i).positions()));
+        }
+    }
+}
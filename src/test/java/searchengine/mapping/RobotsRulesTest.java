@@ -0,0 +1,80 @@
+package searchengine.mapping;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RobotsRulesTest {
+
+    @Test
+    void longestMatchingRuleWins() {
+        RobotsRules rules = RobotsRules.parse("""
+                User-agent: *
+                Disallow: /private
+                Allow: /private/open
+                """, "SearchBot");
+
+        assertThat(rules.isAllowed("/private")).isFalse();
+        assertThat(rules.isAllowed("/private/secret")).isFalse();
+        assertThat(rules.isAllowed("/private/open/page")).isTrue();
+        assertThat(rules.isAllowed("/public")).isTrue();
+    }
+
+    @Test
+    void allowWinsRuleOfEqualLength() {
+        RobotsRules rules = RobotsRules.parse("""
+                User-agent: *
+                Disallow: /page
+                Allow: /page
+                """, "SearchBot");
+
+        assertThat(rules.isAllowed("/page")).isTrue();
+    }
+
+    @Test
+    void wildcardAndEndAnchor() {
+        RobotsRules rules = RobotsRules.parse("""
+                User-agent: *
+                Disallow: /*.pdf$
+                Disallow: /*?sort=
+                """, "SearchBot");
+
+        assertThat(rules.isAllowed("/files/a.pdf")).isFalse();
+        assertThat(rules.isAllowed("/files/a.pdf?download=1")).isTrue();
+        assertThat(rules.isAllowed("/list?sort=price")).isFalse();
+        assertThat(rules.isAllowed("/list?page=2")).isTrue();
+    }
+
+    @Test
+    void ownGroupReplacesWildcardGroup() {
+        RobotsRules rules = RobotsRules.parse("""
+                User-agent: *
+                Disallow: /
+                Crawl-delay: 10
+
+                # комментарий между группами
+                User-agent: Other
+                User-agent: SearchBot
+                Disallow: /admin
+                Crawl-delay: 0.5
+
+                Sitemap: https://a.ru/sitemap.xml
+                """, "Mozilla/5.0 (compatible; SearchBot/1.0)");
+
+        assertThat(rules.isAllowed("/news")).isTrue();
+        assertThat(rules.isAllowed("/admin/users")).isFalse();
+        assertThat(rules.getCrawlDelaySeconds()).isEqualTo(0.5);
+        assertThat(rules.getSitemaps()).containsExactly("https://a.ru/sitemap.xml");
+    }
+
+    @Test
+    void withoutMatchingGroupEverythingIsAllowed() {
+        RobotsRules rules = RobotsRules.parse("""
+                User-agent: Other
+                Disallow: /
+                """, "SearchBot");
+
+        assertThat(rules.isAllowed("/")).isTrue();
+        assertThat(rules.getCrawlDelaySeconds()).isEqualTo(-1);
+    }
+}
@@ -0,0 +1,139 @@
+package searchengine.mapping;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import searchengine.config.AppConfigProperties;
+import searchengine.config.Website;
+import searchengine.model.Page;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Обход сайта на локальном HTTP-сервере: правила robots.txt, Crawl-delay и карты сайта из robots.txt,
+ * включая сжатую sitemap.xml.gz.
+ */
+class SiteCrawlerTest {
+    private static final String USER_AGENT = "SearchBot/1.0";
+    private static final double CRAWL_DELAY_SECONDS = 0.2;
+    private TestHttpServer server;
+    private String origin;
+    private ExecutorService parseExecutor;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new TestHttpServer(4);
+        origin = server.origin();
+        parseExecutor = Executors.newFixedThreadPool(2);
+
+        server.text("/robots.txt", "text/plain", """
+                User-agent: *
+                Disallow: /private
+                Allow: /private/open
+                Crawl-delay: %s
+                Sitemap: %s/sitemap-index.xml
+                """.formatted(CRAWL_DELAY_SECONDS, origin));
+        server.text("/sitemap-index.xml", "application/xml", """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <sitemapindex xmlns="http://www.sitemaps.org/schemas/sitemap/0.9">
+                  <sitemap><loc>%s/sitemap-pages.xml.gz</loc></sitemap>
+                </sitemapindex>
+                """.formatted(origin));
+        server.respond("/sitemap-pages.xml.gz", 200, "application/gzip", TestHttpServer.gzip("""
+                <?xml version="1.0" encoding="UTF-8"?>
+                <urlset xmlns="http://www.sitemaps.org/schemas/sitemap/0.9">
+                  <url><loc>%1$s/orphan</loc></url>
+                  <url><loc>%1$s/private/hidden</loc></url>
+                </urlset>
+                """.formatted(origin).getBytes(StandardCharsets.UTF_8)));
+        server.html("/", "<a href=\"/a\">a</a> <a href=\"/private/secret\">s</a> <a href=\"/private/open/page\">o</a>");
+        server.html("/a", "<a href=\"/\">главная</a>");
+        server.html("/private/open/page", "открытая страница");
+        server.html("/private/secret", "закрытая страница");
+        server.html("/private/hidden", "закрытая страница из карты сайта");
+        server.html("/orphan", "страница, на которую нет ссылок");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+        parseExecutor.shutdownNow();
+    }
+
+    @Test
+    void jsoupFetcherFollowsRobotsAndSitemaps() {
+        AppConfigProperties connectionSetting = connectionSetting();
+        try (PageFetcher fetcher = new JsoupPageFetcher(connectionSetting, new ResponseGuard(connectionSetting))) {
+            assertCrawledAllowedPagesOnly(crawl(fetcher));
+        }
+    }
+
+    @Test
+    void httpClientFetcherFollowsRobotsAndSitemaps() {
+        AppConfigProperties connectionSetting = connectionSetting();
+        try (PageFetcher fetcher = new HttpClientPageFetcher(connectionSetting, new ResponseGuard(connectionSetting))) {
+            assertCrawledAllowedPagesOnly(crawl(fetcher));
+        }
+    }
+
+    @Test
+    void crawlDelaySpacesRequestsToHost() {
+        AppConfigProperties connectionSetting = connectionSetting();
+        try (PageFetcher fetcher = new HttpClientPageFetcher(connectionSetting, new ResponseGuard(connectionSetting))) {
+            crawl(fetcher);
+        }
+
+        List<TestHttpServer.Request> afterRobots = server.requests();
+        assertThat(afterRobots.get(0).path()).isEqualTo("/robots.txt");
+        afterRobots.remove(0);
+        assertThat(afterRobots).hasSize(6);
+        long minimalGap = (long) (CRAWL_DELAY_SECONDS * 0.9 * 1e9);
+        for (int i = 1; i < afterRobots.size(); i++) {
+            // сайт разрешает 100 запросов в секунду, интервал задаёт только Crawl-delay
+            assertThat(afterRobots.get(i).nanos() - afterRobots.get(i - 1).nanos()).isGreaterThan(minimalGap);
+        }
+    }
+
+    private Set<String> crawl(PageFetcher fetcher) {
+        Website website = new Website();
+        website.setUrl(origin);
+        website.setName("test");
+        website.setMaxConcurrentRequests(4);
+        website.setRequestsPerSecond(100);
+        Set<String> pages = ConcurrentHashMap.newKeySet();
+        SiteCrawler crawler = new SiteCrawler(website, fetcher, parseExecutor, new AtomicBoolean(true),
+                new ConcurrentHashMap<>(), KnownPages.none(), page -> pages.add(pathWithCode(page)));
+        crawler.respectRobots(USER_AGENT);
+        crawler.crawl();
+        return pages;
+    }
+
+    private void assertCrawledAllowedPagesOnly(Set<String> pages) {
+        assertThat(pages).containsExactlyInAnyOrder("/ 200", "/a 200", "/private/open/page 200", "/orphan 200");
+        assertThat(server.requestedPaths())
+                .contains("/sitemap-index.xml", "/sitemap-pages.xml.gz")
+                .doesNotContain("/private/secret", "/private/hidden");
+    }
+
+    private static String pathWithCode(Page page) {
+        return page.getPath() + " " + page.getCode();
+    }
+
+    private static AppConfigProperties connectionSetting() {
+        AppConfigProperties connectionSetting = new AppConfigProperties();
+        connectionSetting.setUserAgent(USER_AGENT);
+        connectionSetting.setReferer("http://www.google.com");
+        connectionSetting.setTimeout(5000);
+        connectionSetting.setFetchThreads(4);
+        return connectionSetting;
+    }
+}
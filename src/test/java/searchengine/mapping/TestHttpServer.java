@@ -0,0 +1,134 @@
+package searchengine.mapping;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Локальный HTTP-сервер для тестов загрузчиков и обхода: отдаёт заданные ответы по пути,
+ * на остальные пути - 404, и запоминает полученные запросы.
+ */
+final class TestHttpServer implements AutoCloseable {
+    private final Map<String, Response> responses = new ConcurrentHashMap<>();
+    private final Queue<Request> requests = new ConcurrentLinkedQueue<>();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private volatile boolean compress;
+    private volatile long latencyMillis;
+
+    /**
+     * @param acceptEncoding заголовок Accept-Encoding запроса или null
+     */
+    record Request(String path, long nanos, String acceptEncoding) {
+    }
+
+    private record Response(int code, String contentType, byte[] body) {
+    }
+
+    TestHttpServer(int threads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::serve);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    String origin() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    void html(String path, String body) {
+        html(path, 200, body);
+    }
+
+    void html(String path, int code, String body) {
+        String html = "<html><head><title>" + path + "</title></head><body>" + body + "</body></html>";
+        respond(path, code, "text/html; charset=utf-8", html.getBytes(StandardCharsets.UTF_8));
+    }
+
+    void text(String path, String contentType, String text) {
+        respond(path, 200, contentType, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    void respond(String path, int code, String contentType, byte[] body) {
+        responses.put(path, new Response(code, contentType, body));
+    }
+
+    /**
+     * Сжимать ответы gzip (Content-Encoding), если клиент указал gzip в Accept-Encoding.
+     */
+    void compressResponses(boolean compress) {
+        this.compress = compress;
+    }
+
+    /**
+     * Задержка перед каждым ответом - время ответа удалённого сайта.
+     */
+    void latency(long millis) {
+        this.latencyMillis = millis;
+    }
+
+    List<Request> requests() {
+        return new ArrayList<>(requests);
+    }
+
+    List<String> requestedPaths() {
+        return requests.stream().map(Request::path).toList();
+    }
+
+    static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        requests.add(new Request(exchange.getRequestURI().getPath(), System.nanoTime(), acceptEncoding));
+        Response response = responses.get(exchange.getRequestURI().getPath());
+        try (OutputStream out = exchange.getResponseBody()) {
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+            if (response == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            byte[] body = response.body();
+            if (compress && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                body = gzip(body);
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            exchange.getResponseHeaders().set("Content-Type", response.contentType());
+            exchange.sendResponseHeaders(response.code(), body.length);
+            out.write(body);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
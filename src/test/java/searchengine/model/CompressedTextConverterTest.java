@@ -0,0 +1,87 @@
+package searchengine.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompressedTextConverterTest {
+    private final CompressedTextConverter converter = new CompressedTextConverter();
+
+    @Test
+    void compressDecompressRoundTrip() {
+        String html = "<html><body>" + "Главная страница сайта, main page. ".repeat(2000) + "</body></html>";
+        for (String text : new String[]{"a", "дом", html}) {
+            assertThat(converter.convertToEntityAttribute(converter.convertToDatabaseColumn(text))).isEqualTo(text);
+        }
+        assertThat(CompressedTextConverter.compress(html).length).isLessThan(html.length() / 10);
+    }
+
+    @Test
+    void emptyAndNullAreNotCompressed() {
+        assertThat(converter.convertToDatabaseColumn(null)).isNull();
+        assertThat(converter.convertToEntityAttribute(null)).isNull();
+        assertThat(converter.convertToDatabaseColumn("")).isEmpty();
+        assertThat(converter.convertToEntityAttribute(new byte[0])).isEqualTo("");
+    }
+
+    @Test
+    void layoutMatchesMySqlCompress() throws Exception {
+        byte[] raw = "Кириллица и latin".getBytes(StandardCharsets.UTF_8);
+        byte[] data = CompressedTextConverter.compress("Кириллица и latin");
+
+        int length = (data[0] & 0xFF) | (data[1] & 0xFF) << 8 | (data[2] & 0xFF) << 16 | (data[3] & 0xFF) << 24;
+        assertThat(length).isEqualTo(raw.length);
+        Inflater inflater = new Inflater();
+        inflater.setInput(data, 4, data.length - 4);
+        byte[] inflated = new byte[raw.length];
+        assertThat(inflater.inflate(inflated)).isEqualTo(raw.length);
+        assertThat(inflater.finished()).isTrue();
+        inflater.end();
+        assertThat(inflated).isEqualTo(raw);
+    }
+
+    /**
+     * MySQL сжимает COMPRESS() с уровнем zlib по умолчанию, а не BEST_SPEED; такие данные тоже читаются.
+     */
+    @Test
+    void readsDefaultLevelZlibWithLengthPrefix() {
+        String text = "страница ".repeat(500);
+        byte[] raw = text.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(raw.length);
+        out.write(raw.length >>> 8);
+        out.write(raw.length >>> 16);
+        out.write(raw.length >>> 24);
+        Deflater deflater = new Deflater();
+        deflater.setInput(raw);
+        deflater.finish();
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+
+        assertThat(CompressedTextConverter.decompress(out.toByteArray())).isEqualTo(text);
+    }
+
+    @Test
+    void corruptedDataIsRejected() {
+        byte[] data = CompressedTextConverter.compress("повреждённые данные ".repeat(100));
+
+        assertThatThrownBy(() -> CompressedTextConverter.decompress(new byte[]{1, 2}))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CompressedTextConverter.decompress(Arrays.copyOf(data, data.length / 2)))
+                .isInstanceOf(IllegalArgumentException.class);
+        byte[] garbage = data.clone();
+        Arrays.fill(garbage, 4, garbage.length, (byte) 0x55);
+        assertThatThrownBy(() -> CompressedTextConverter.decompress(garbage))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,29 @@
+package searchengine.model;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import searchengine.TestDatabase;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Данные CompressedTextConverter читаются функцией MySQL UNCOMPRESS(), а результат COMPRESS() - конвертером.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class CompressedTextMySqlTest {
+    private static final String TEXT = "<p>Главная страница сайта, main page.</p>".repeat(200);
+
+    @Test
+    void converterAndMySqlReadEachOther() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(TestDatabase.create());
+
+        String uncompressed = jdbcTemplate.queryForObject("SELECT CONVERT(UNCOMPRESS(?) USING utf8mb4)", String.class,
+                (Object) CompressedTextConverter.compress(TEXT));
+        byte[] compressed = jdbcTemplate.queryForObject("SELECT COMPRESS(?)", byte[].class, TEXT);
+
+        assertThat(uncompressed).isEqualTo(TEXT);
+        assertThat(CompressedTextConverter.decompress(compressed)).isEqualTo(TEXT);
+        assertThat(jdbcTemplate.queryForObject("SELECT LENGTH(COMPRESS(''))", Integer.class)).isZero();
+    }
+}
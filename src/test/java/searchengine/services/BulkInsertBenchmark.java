@@ -0,0 +1,95 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import searchengine.Benchmarks;
+import searchengine.TestDatabase;
+import searchengine.config.BulkLoadSettings;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Вставка страниц с чтением сгенерированных ключей и upsert частот лемм через BulkLoader:
+ * chunk-rows 1 - по одному INSERT на строку, как у Hibernate с GenerationType.IDENTITY,
+ * против многострочных INSERT. Каждый прогон - одна транзакция на одном соединении,
+ * как пачка в BatchPageInsert.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class BulkInsertBenchmark {
+    private static final int PAGES = 1000;
+    private static final int LEMMAS = 10000;
+    private static final List<String> PAGE_COLUMNS = List.of("path", "code", "title", "text", "site_id");
+    private static final List<String> LEMMA_COLUMNS = List.of("lemma", "frequency", "site_id");
+
+    private record PageRow(String path, String text) {
+    }
+
+    @Test
+    void rowByRowAgainstMultiRowInserts() {
+        List<String> texts = Benchmarks.pageTexts(PAGES);
+        List<PageRow> pages = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            pages.add(new PageRow("/page/" + i, texts.get(i)));
+        }
+        List<String> lemmas = new ArrayList<>();
+        for (int i = 0; i < LEMMAS; i++) {
+            lemmas.add("лемма" + i);
+        }
+        double pageMegabytes = Benchmarks.totalChars(texts) * 2 / 1e6;
+
+        for (int chunkRows : new int[]{1, 50, 500}) {
+            DataSource dataSource = TestDatabase.create();
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+            BulkLoadSettings settings = new BulkLoadSettings();
+            settings.setChunkRows(chunkRows);
+            BulkLoader bulkLoader = new BulkLoader(jdbcTemplate, settings);
+            AtomicInteger lastKey = new AtomicInteger();
+
+            long pageNanos = Benchmarks.medianNanos("page, chunk-rows " + chunkRows, 1, 3,
+                    () -> transaction.execute(status -> insertPages(bulkLoader, jdbcTemplate, pages, lastKey)));
+            long lemmaNanos = Benchmarks.medianNanos("lemma upsert, chunk-rows " + chunkRows, 1, 3,
+                    () -> transaction.execute(status -> upsertLemmas(bulkLoader, jdbcTemplate, lemmas)));
+
+            assertThat(lastKey.get()).isEqualTo(jdbcTemplate.queryForObject("SELECT MAX(id) FROM page", Integer.class));
+            System.out.printf("chunk-rows %3d: страницы %.0f строк/с (%.1f МБ/с), леммы %.0f строк/с%n", chunkRows,
+                    pages.size() / (pageNanos / 1e9), pageMegabytes / (pageNanos / 1e9), LEMMAS / (lemmaNanos / 1e9));
+        }
+    }
+
+    private static int insertPages(BulkLoader bulkLoader, JdbcTemplate jdbcTemplate, List<PageRow> pages,
+                                   AtomicInteger lastKey) {
+        int siteId = insertSite(jdbcTemplate);
+        bulkLoader.insert("page", PAGE_COLUMNS, pages, (ps, first, page) -> {
+            ps.setString(first, page.path());
+            ps.setInt(first + 1, 200);
+            ps.setString(first + 2, page.path());
+            ps.setString(first + 3, page.text());
+            ps.setInt(first + 4, siteId);
+        }, page -> 64 + 2L * page.text().length(), (page, key) -> lastKey.set(key));
+        return siteId;
+    }
+
+    private static int upsertLemmas(BulkLoader bulkLoader, JdbcTemplate jdbcTemplate, List<String> lemmas) {
+        int siteId = insertSite(jdbcTemplate);
+        bulkLoader.upsert("lemma", LEMMA_COLUMNS, lemmas, (ps, first, lemma) -> {
+            ps.setString(first, lemma);
+            ps.setInt(first + 1, 1);
+            ps.setInt(first + 2, siteId);
+        }, lemma -> 64 + 2L * lemma.length(), "frequency = frequency + VALUES(frequency)");
+        return siteId;
+    }
+
+    private static int insertSite(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.update("INSERT INTO site (status, status_time, url, name) VALUES ('INDEXING', NOW(6), 'https://a.ru', 'a')");
+        return jdbcTemplate.queryForObject("SELECT LAST_INSERT_ID()", Integer.class);
+    }
+}
@@ -0,0 +1,162 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import searchengine.Benchmarks;
+import searchengine.TestDatabase;
+import searchengine.config.BulkLoadSettings;
+import searchengine.mapping.PostingBlock;
+import searchengine.model.Site;
+import searchengine.model.Status;
+import searchengine.repositories.SiteRepository;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Чтение индекса поиском из MySQL (DatabaseIndexStorage) и из сегмента (SegmentIndexStorage).
+ * Частоты лемм распределены по закону Ципфа, как в текстах: несколько лемм встречаются почти
+ * на каждой странице, большинство - на единицах. Запрос поиска - частоты и списки страниц
+ * трёх лемм, выбранных с тем же распределением.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class IndexStorageBenchmark {
+    private static final int PAGES = 10000;
+    private static final int LEMMAS = 5000;
+    private static final int LEMMAS_PER_PAGE = 80;
+    private static final int QUERIES = 2000;
+    @TempDir
+    Path directory;
+
+    @Test
+    void databaseAgainstSegments() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(TestDatabase.create());
+        Site site = createSite(jdbcTemplate);
+        List<String> lemmas = fillIndex(jdbcTemplate, site.getId());
+        DatabaseIndexStorage database = new DatabaseIndexStorage(jdbcTemplate);
+        SegmentIndexStorage segments = new SegmentIndexStorage(jdbcTemplate, repository(site), directory, 60000);
+        segments.siteIndexed(site);
+
+        Random random = new Random(7);
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < QUERIES * 3; i++) {
+            queries.add(lemmas.get(zipf(random, lemmas.size())));
+        }
+        for (String lemma : queries.subList(0, 100)) {
+            assertThat(segments.frequency(site.getId(), lemma)).isEqualTo(database.frequency(site.getId(), lemma));
+            assertThat(segments.postings(site.getId(), lemma).pageIds())
+                    .containsExactly(database.postings(site.getId(), lemma).pageIds());
+        }
+
+        long databaseNanos = Benchmarks.medianNanos("DATABASE", 1, 5, () -> search(database, site.getId(), queries));
+        long segmentNanos = Benchmarks.medianNanos("SEGMENTS", 1, 5, () -> search(segments, site.getId(), queries));
+
+        System.out.printf("%d запросов по 3 леммы: DATABASE %.0f запросов/с, SEGMENTS %.0f запросов/с%n", QUERIES,
+                QUERIES / (databaseNanos / 1e9), QUERIES / (segmentNanos / 1e9));
+    }
+
+    private static long search(IndexStorage storage, int siteId, List<String> queries) {
+        long postings = storage.pageCount(siteId);
+        for (String lemma : queries) {
+            if (storage.frequency(siteId, lemma) > 0) {
+                postings += storage.postings(siteId, lemma).size();
+            }
+        }
+        return postings;
+    }
+
+    private static Site createSite(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.update("INSERT INTO site (status, status_time, url, name) VALUES ('INDEXED', NOW(6), 'https://a.ru', 'a')");
+        Site site = new Site();
+        site.setId(jdbcTemplate.queryForObject("SELECT MAX(id) FROM site", Integer.class));
+        site.setUrl("https://a.ru");
+        site.setStatus(Status.INDEXED);
+        return site;
+    }
+
+    /**
+     * Страницы, леммы и блоки списков страниц, записанные пачками по 500 страниц и затем
+     * объединённые, как после индексации.
+     *
+     * @return леммы по убыванию частоты
+     */
+    private static List<String> fillIndex(JdbcTemplate jdbcTemplate, int siteId) {
+        List<Object[]> pages = new ArrayList<>();
+        for (int i = 0; i < PAGES; i++) {
+            pages.add(new Object[]{"/" + i, siteId});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO page (path, code, site_id) VALUES (?, 200, ?)", pages);
+        List<Integer> pageIds = jdbcTemplate.queryForList("SELECT id FROM page WHERE site_id = ? ORDER BY id", Integer.class, siteId);
+
+        Random random = new Random(1);
+        List<Map<Integer, Integer>> pageLemmas = new ArrayList<>();
+        int[] frequency = new int[LEMMAS];
+        for (int page = 0; page < PAGES; page++) {
+            Map<Integer, Integer> counts = new HashMap<>();
+            for (int i = 0; i < LEMMAS_PER_PAGE; i++) {
+                counts.merge(zipf(random, LEMMAS), 1, Integer::sum);
+            }
+            counts.keySet().forEach(lemma -> frequency[lemma]++);
+            pageLemmas.add(counts);
+        }
+        List<String> lemmas = new ArrayList<>();
+        List<Object[]> lemmaRows = new ArrayList<>();
+        for (int i = 0; i < LEMMAS; i++) {
+            lemmas.add("лемма" + i);
+            lemmaRows.add(new Object[]{lemmas.get(i), frequency[i], siteId});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO lemma (lemma, frequency, site_id) VALUES (?, ?, ?)", lemmaRows);
+        Map<String, Integer> lemmaIds = new HashMap<>();
+        jdbcTemplate.query("SELECT id, lemma FROM lemma WHERE site_id = ?",
+                rs -> {
+                    lemmaIds.put(rs.getString(2), rs.getInt(1));
+                }, siteId);
+
+        PostingStore postingStore = new PostingStore(jdbcTemplate, new BulkLoader(jdbcTemplate, new BulkLoadSettings()));
+        for (int from = 0; from < PAGES; from += 500) {
+            Map<Integer, List<PostingBlock.Entry>> batch = new HashMap<>();
+            for (int page = from; page < Math.min(PAGES, from + 500); page++) {
+                for (Map.Entry<Integer, Integer> lemma : pageLemmas.get(page).entrySet()) {
+                    batch.computeIfAbsent(lemmaIds.get(lemmas.get(lemma.getKey())), id -> new ArrayList<>())
+                            .add(new PostingBlock.Entry(pageIds.get(page), lemma.getValue(), new byte[0]));
+                }
+            }
+            postingStore.append(siteId, batch);
+        }
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+        List<Integer> fragmented = postingStore.fragmentedLemmas(siteId);
+        for (int from = 0; from < fragmented.size(); from += 100) {
+            List<Integer> chunk = fragmented.subList(from, Math.min(fragmented.size(), from + 100));
+            transaction.executeWithoutResult(status -> postingStore.compact(siteId, chunk));
+        }
+        return lemmas;
+    }
+
+    /**
+     * Номер от 0 до size - 1 с вероятностью, обратно пропорциональной номеру + 1.
+     */
+    private static int zipf(Random random, int size) {
+        return (int) Math.min(size - 1, Math.floor(Math.exp(random.nextDouble() * Math.log(size + 1)) - 1));
+    }
+
+    private static SiteRepository repository(Site site) {
+        return (SiteRepository) Proxy.newProxyInstance(SiteRepository.class.getClassLoader(),
+                new Class<?>[]{SiteRepository.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("findLive")) {
+                        return List.of(site);
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
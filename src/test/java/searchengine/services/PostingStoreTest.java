@@ -0,0 +1,135 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import searchengine.TestDatabase;
+import searchengine.config.BulkLoadSettings;
+import searchengine.mapping.PostingBlock;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Блоки одной леммы записаны двумя пачками индексации и пересекаются по диапазону id страниц.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class PostingStoreTest {
+    private static final int PAGES = 100;
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+    private PostingStore postingStore;
+    private int siteId;
+    private int lemmaId;
+
+    @BeforeEach
+    void setUp() {
+        DataSource dataSource = TestDatabase.create();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        postingStore = new PostingStore(jdbcTemplate, new BulkLoader(jdbcTemplate, new BulkLoadSettings()));
+        jdbcTemplate.update("INSERT INTO site (status, status_time, url, name) VALUES ('INDEXED', NOW(6), 'https://a.ru', 'a')");
+        siteId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM site", Integer.class);
+        jdbcTemplate.update("INSERT INTO lemma (lemma, frequency, site_id) VALUES ('дом', ?, ?)", PAGES, siteId);
+        lemmaId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM lemma", Integer.class);
+        List<PostingBlock.Entry> odd = new ArrayList<>();
+        List<PostingBlock.Entry> even = new ArrayList<>();
+        for (int pageId = 1; pageId <= PAGES; pageId++) {
+            (pageId % 2 == 1 ? odd : even).add(new PostingBlock.Entry(pageId, pageId, new byte[]{(byte) pageId}));
+        }
+        postingStore.append(siteId, Map.of(lemmaId, odd));
+        postingStore.append(siteId, Map.of(lemmaId, even));
+    }
+
+    @Test
+    void compactMergesOverlappingBlocks() {
+        assertThat(postingStore.fragmentedLemmas(siteId)).containsExactly(lemmaId);
+
+        transaction(TransactionDefinition.ISOLATION_REPEATABLE_READ)
+                .executeWithoutResult(status -> postingStore.compact(siteId, List.of(lemmaId)));
+
+        assertThat(postingStore.fragmentedLemmas(siteId)).isEmpty();
+        List<PostingBlock.Entry> entries = entries();
+        assertThat(entries).hasSize(PAGES);
+        for (int i = 0; i < PAGES; i++) {
+            assertThat(entries.get(i).pageId()).isEqualTo(i + 1);
+            assertThat(entries.get(i).rank()).isEqualTo(i + 1);
+            assertThat(entries.get(i).positions()).containsExactly((byte) (i + 1));
+        }
+    }
+
+    @Test
+    void removeDropsPagesFromBlocks() {
+        transaction(TransactionDefinition.ISOLATION_READ_COMMITTED)
+                .executeWithoutResult(status -> postingStore.remove(List.of(lemmaId), Set.of(2, 3)));
+
+        assertThat(pageIds()).hasSize(PAGES - 2).doesNotContain(2, 3);
+    }
+
+    /**
+     * Слияние, начатое во время незавершённого удаления страниц, ждёт его фиксации и видит
+     * результат: удалённые страницы не возвращаются в блок.
+     */
+    @Test
+    void compactWaitsForConcurrentRemoval() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        AtomicReference<Future<?>> compaction = new AtomicReference<>();
+        try {
+            transaction(TransactionDefinition.ISOLATION_READ_COMMITTED).executeWithoutResult(status -> {
+                postingStore.remove(List.of(lemmaId), Set.of(3, 4));
+                compaction.set(executor.submit(() -> transaction(TransactionDefinition.ISOLATION_REPEATABLE_READ)
+                        .executeWithoutResult(s -> postingStore.compact(siteId, List.of(lemmaId)))));
+                pause(500);
+                assertThat(compaction.get().isDone()).isFalse();
+            });
+            compaction.get().get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(pageIds()).hasSize(PAGES - 2).doesNotContain(3, 4);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM posting_block WHERE lemma_id = ?", Integer.class, lemmaId))
+                .isEqualTo(1);
+    }
+
+    private TransactionTemplate transaction(int isolation) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setIsolationLevel(isolation);
+        return template;
+    }
+
+    private List<PostingBlock.Entry> entries() {
+        List<PostingBlock.Entry> entries = new ArrayList<>();
+        jdbcTemplate.query("SELECT first_page_id, last_page_id, page_count, postings, positions FROM posting_block"
+                + " WHERE lemma_id = ? ORDER BY first_page_id", rs -> {
+            entries.addAll(new PostingBlock(rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getBytes(4), rs.getBytes(5)).entries());
+        }, lemmaId);
+        return entries;
+    }
+
+    private List<Integer> pageIds() {
+        return entries().stream().map(PostingBlock.Entry::pageId).sorted().toList();
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import searchengine.TestDatabase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Планы запросов поиска и статистики на схеме из миграций: каждая таблица читается по индексу,
+ * а не полным просмотром. Данных столько, чтобы оптимизатор не выбирал полный просмотр
+ * из-за размера таблиц.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class QueryPlanTest {
+    private static final int SITES = 50;
+    private static final int PAGES = 2000;
+    private static final int LEMMAS = 2000;
+    private static JdbcTemplate jdbcTemplate;
+    private static int siteId;
+
+    @BeforeAll
+    static void fill() {
+        jdbcTemplate = new JdbcTemplate(TestDatabase.create());
+        List<Object[]> sites = new ArrayList<>();
+        for (int i = 0; i < SITES; i++) {
+            sites.add(new Object[]{"https://site" + i + ".ru", "site" + i, i % 2 == 1});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO site (status, status_time, url, name, staging)"
+                + " VALUES ('INDEXED', NOW(6), ?, ?, ?)", sites);
+        List<Integer> siteIds = jdbcTemplate.queryForList("SELECT id FROM site ORDER BY id", Integer.class);
+        siteId = siteIds.get(0);
+        for (int site : siteIds.subList(0, 4)) {
+            List<Object[]> pages = new ArrayList<>();
+            List<Object[]> lemmas = new ArrayList<>();
+            for (int i = 0; i < PAGES; i++) {
+                pages.add(new Object[]{"/page/" + i, site});
+            }
+            for (int i = 0; i < LEMMAS; i++) {
+                lemmas.add(new Object[]{"слово" + i, site});
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO page (path, code, site_id) VALUES (?, 200, ?)", pages);
+            jdbcTemplate.batchUpdate("INSERT INTO lemma (lemma, frequency, site_id) VALUES (?, 1, ?)", lemmas);
+        }
+        jdbcTemplate.update("INSERT INTO posting_block (site_id, lemma_id, first_page_id, last_page_id, page_count,"
+                + " postings, positions) SELECT site_id, id, 1, 1, 1, X'0101', X'00' FROM lemma");
+        jdbcTemplate.execute("ANALYZE TABLE site, page, lemma, posting_block");
+    }
+
+    @Test
+    void searchReadsLemmaAndBlocksByIndex() {
+        assertIndexUsed(DatabaseIndexStorage.FREQUENCY_SQL, "lemma", List.of("lemma_site_lemma", "lemma_lemma_site_frequency"),
+                siteId, "слово7");
+        assertIndexUsed(DatabaseIndexStorage.POSTINGS_SQL, "l", List.of("lemma_site_lemma", "lemma_lemma_site_frequency"),
+                siteId, "слово7");
+        assertIndexUsed(DatabaseIndexStorage.POSTINGS_SQL, "b", List.of("posting_block_lemma_page"), siteId, "слово7");
+        assertIndexUsed(DatabaseIndexStorage.PAGE_COUNT_SQL, "page", List.of(), siteId);
+    }
+
+    /**
+     * SQL, который Hibernate строит для SiteRepository.findByUrl, PageRepository.countPagesToSite
+     * и LemmaRepository.countLemmaToSite.
+     */
+    @Test
+    void statisticsReadsSitePagesAndLemmasByIndex() {
+        assertIndexUsed("SELECT id, status, status_time, last_error, name FROM site WHERE url = ? AND staging = 0",
+                "site", List.of("site_url_staging"), "https://site0.ru");
+        assertIndexUsed("SELECT COUNT(id) FROM page WHERE site_id = ?", "page", List.of(), siteId);
+        assertIndexUsed("SELECT COUNT(id) FROM lemma WHERE site_id = ?", "lemma", List.of(), siteId);
+    }
+
+    /**
+     * @param keys допустимые индексы; пустой список - любой индекс
+     */
+    private static void assertIndexUsed(String sql, String table, List<String> keys, Object... args) {
+        List<Map<String, Object>> plan = jdbcTemplate.queryForList("EXPLAIN " + sql, args);
+        Map<String, Object> row = plan.stream()
+                .filter(r -> table.equals(r.get("table")))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("В плане нет таблицы " + table + ": " + plan));
+        assertThat(row.get("type")).as("доступ к %s в %s", table, plan).isNotIn("ALL", "index");
+        assertThat(row.get("key")).as("индекс %s в %s", table, plan).isNotNull();
+        if (!keys.isEmpty()) {
+            assertThat(row.get("key")).as("индекс %s в %s", table, plan).isIn(keys.toArray());
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import searchengine.TestDatabase;
+import searchengine.config.BulkLoadSettings;
+import searchengine.mapping.PostingBlock;
+import searchengine.model.Site;
+import searchengine.model.Status;
+import searchengine.repositories.SiteRepository;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Пока сегмента сайта нет, поиск читает индекс из MySQL; построенный сегмент читается без MySQL.
+ * После переиндексации страницы сегмент не выгружается сразу, а строится один раз после паузы.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class SegmentIndexStorageTest {
+    private static final long REBUILD_DELAY_MS = 300;
+    @TempDir
+    Path directory;
+    private JdbcTemplate jdbcTemplate;
+    private Site site;
+    private int firstPage;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(TestDatabase.create());
+        jdbcTemplate.update("INSERT INTO site (status, status_time, url, name) VALUES ('INDEXED', NOW(6), 'https://a.ru', 'a')");
+        site = new Site();
+        site.setId(jdbcTemplate.queryForObject("SELECT MAX(id) FROM site", Integer.class));
+        site.setUrl("https://a.ru");
+        site.setStatus(Status.INDEXED);
+        for (int i = 1; i <= 3; i++) {
+            jdbcTemplate.update("INSERT INTO page (path, code, site_id) VALUES (?, 200, ?)", "/" + i, site.getId());
+        }
+        firstPage = jdbcTemplate.queryForObject("SELECT MIN(id) FROM page", Integer.class);
+        jdbcTemplate.update("INSERT INTO lemma (lemma, frequency, site_id) VALUES ('дом', 2, ?)", site.getId());
+        int lemmaId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM lemma", Integer.class);
+        new PostingStore(jdbcTemplate, new BulkLoader(jdbcTemplate, new BulkLoadSettings())).append(site.getId(),
+                Map.of(lemmaId, List.of(new PostingBlock.Entry(firstPage, 3, new byte[0]),
+                        new PostingBlock.Entry(firstPage + 2, 1, new byte[0]))));
+    }
+
+    @Test
+    void searchFallsBackToDatabaseUntilSegmentIsBuilt() {
+        SegmentIndexStorage storage = storage();
+
+        assertThat(Files.exists(segmentFile())).isFalse();
+        assertIndex(storage);
+
+        storage.siteIndexed(site);
+        jdbcTemplate.update("DELETE FROM posting_block");
+        jdbcTemplate.update("DELETE FROM lemma");
+
+        assertThat(Files.exists(segmentFile())).isTrue();
+        assertIndex(storage);
+    }
+
+    @Test
+    void missingSegmentIsBuiltAfterStartup() throws InterruptedException {
+        SegmentIndexStorage storage = storage();
+        assertThat(Files.exists(segmentFile())).isFalse();
+
+        storage.buildMissingSegments();
+
+        for (int i = 0; i < 100 && !Files.exists(segmentFile()); i++) {
+            Thread.sleep(100);
+        }
+        assertThat(Files.exists(segmentFile())).isTrue();
+        SegmentIndexStorage reopened = storage();
+        jdbcTemplate.update("DELETE FROM posting_block");
+        assertIndex(reopened);
+    }
+
+    @Test
+    void pageUpdatesFallBackToDatabaseAndRebuildOnce() throws InterruptedException {
+        SegmentIndexStorage storage = storage();
+        storage.siteIndexed(site);
+        assertThat(Files.exists(segmentFile())).isTrue();
+
+        for (int frequency = 3; frequency <= 5; frequency++) {
+            jdbcTemplate.update("UPDATE lemma SET frequency = ? WHERE lemma = 'дом'", frequency);
+            storage.pageIndexed(site);
+            assertThat(Files.exists(segmentFile())).isFalse();
+            assertThat(storage.frequency(site.getId(), "дом")).isEqualTo(frequency);
+            Thread.sleep(REBUILD_DELAY_MS / 2);
+        }
+        assertThat(Files.exists(segmentFile())).isFalse();
+
+        for (int i = 0; i < 50 && !Files.exists(segmentFile()); i++) {
+            Thread.sleep(100);
+        }
+        assertThat(Files.exists(segmentFile())).isTrue();
+        jdbcTemplate.update("DELETE FROM posting_block");
+        jdbcTemplate.update("DELETE FROM lemma");
+        assertThat(storage.frequency(site.getId(), "дом")).isEqualTo(5);
+        assertThat(storage.postings(site.getId(), "дом").pageIds()).containsExactly(firstPage, firstPage + 2);
+    }
+
+    private void assertIndex(SegmentIndexStorage storage) {
+        assertThat(storage.frequency(site.getId(), "дом")).isEqualTo(2);
+        assertThat(storage.frequency(site.getId(), "кот")).isZero();
+        assertThat(storage.postings(site.getId(), "дом").pageIds()).containsExactly(firstPage, firstPage + 2);
+        assertThat(storage.pageCount(site.getId())).isEqualTo(3);
+    }
+
+    private SegmentIndexStorage storage() {
+        return new SegmentIndexStorage(jdbcTemplate, repository(site), directory, REBUILD_DELAY_MS);
+    }
+
+    private Path segmentFile() {
+        return directory.resolve("site-" + site.getId() + ".seg");
+    }
+
+    private static SiteRepository repository(Site site) {
+        return (SiteRepository) Proxy.newProxyInstance(SiteRepository.class.getClassLoader(),
+                new Class<?>[]{SiteRepository.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("findLive")) {
+                        return List.of(site);
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,135 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import searchengine.TestDatabase;
+import searchengine.config.BulkLoadSettings;
+import searchengine.config.StorageSettings;
+import searchengine.mapping.PositionList;
+import searchengine.mapping.PostingBlock;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.model.Status;
+import searchengine.repositories.SiteRepository;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Два вызова indexPage для одной новой страницы: второй ждёт фиксации первого и заменяет его
+ * результат, в БД остаётся одна страница, а частоты лемм учитывают её один раз.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class SinglePageInsertTest {
+    private static final String PATH = "/news";
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+    private SinglePageInsert singlePageInsert;
+    private Site site;
+
+    @BeforeEach
+    void setUp() {
+        DataSource dataSource = TestDatabase.create();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbcTemplate.update("INSERT INTO site (status, status_time, url, name) VALUES ('INDEXED', NOW(6), 'https://a.ru', 'a')");
+        site = new Site();
+        site.setId(jdbcTemplate.queryForObject("SELECT MAX(id) FROM site", Integer.class));
+        site.setUrl("https://a.ru");
+        site.setName("a");
+        site.setStatus(Status.INDEXED);
+        site.setStatusTime(LocalDateTime.now());
+        SiteRepository siteRepository = repository();
+        BulkLoader bulkLoader = new BulkLoader(jdbcTemplate, new BulkLoadSettings());
+        BatchPageInsert batchPageInsert = new BatchPageInsert(siteRepository, jdbcTemplate, bulkLoader,
+                new PostingStore(jdbcTemplate, bulkLoader), new StorageSettings());
+        singlePageInsert = new SinglePageInsert(siteRepository, batchPageInsert, jdbcTemplate);
+    }
+
+    @Test
+    void concurrentCallsForSamePathKeepOnePage() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        AtomicReference<Future<?>> second = new AtomicReference<>();
+        try {
+            transaction().executeWithoutResult(status -> {
+                singlePageInsert.singlePageInsert(site, page("дом и кот"), Map.of("дом", positions(0), "кот", positions(2)));
+                second.set(executor.submit(() -> transaction().executeWithoutResult(s -> singlePageInsert.singlePageInsert(
+                        site, page("дом и лес"), Map.of("дом", positions(0), "лес", positions(2))))));
+                pause(500);
+                assertThat(second.get().isDone()).isFalse();
+            });
+            second.get().get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<Integer> pages = jdbcTemplate.queryForList("SELECT id FROM page WHERE path = ?", Integer.class, PATH);
+        assertThat(pages).hasSize(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT text FROM page WHERE id = ?", String.class, pages.get(0)))
+                .isEqualTo("дом и лес");
+        assertThat(jdbcTemplate.queryForList("SELECT lemma FROM lemma ORDER BY lemma", String.class))
+                .containsExactly("дом", "лес");
+        assertThat(jdbcTemplate.queryForList("SELECT frequency FROM lemma", Integer.class)).containsExactly(1, 1);
+        List<Integer> postedPages = new ArrayList<>();
+        jdbcTemplate.query("SELECT first_page_id, last_page_id, page_count, postings, positions FROM posting_block", rs -> {
+            new PostingBlock(rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getBytes(4), rs.getBytes(5)).entries()
+                    .forEach(entry -> postedPages.add(entry.pageId()));
+        });
+        assertThat(postedPages).containsExactly(pages.get(0), pages.get(0));
+    }
+
+    private TransactionTemplate transaction() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        return template;
+    }
+
+    private static Page page(String text) {
+        Page page = new Page(PATH);
+        page.setCode(200);
+        page.setContent("<p>" + text + "</p>");
+        page.setTitle(text);
+        page.setText(text);
+        return page;
+    }
+
+    private static PositionList positions(int position) {
+        PositionList list = new PositionList();
+        list.add(position);
+        return list;
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private SiteRepository repository() {
+        return (SiteRepository) Proxy.newProxyInstance(SiteRepository.class.getClassLoader(),
+                new Class<?>[]{SiteRepository.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("save")) {
+                        return args[0];
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
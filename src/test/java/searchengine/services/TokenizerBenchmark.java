@@ -0,0 +1,62 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+import searchengine.Benchmarks;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Разбиение текстов страниц на слова: TextTokenizer против прежнего пути LemmaExtraction -
+ * toLowerCase, replaceAll, split и проверка каждого слова регулярным выражением.
+ * Оба пути должны выделить из каждой страницы одно и то же множество русских слов.
+ */
+class TokenizerBenchmark {
+    private static final String PATTERN = "^[а-я]+$";
+
+    @Test
+    void tokenizerAgainstRegexSplitting() {
+        List<String> texts = Benchmarks.pageTexts(200);
+        for (String text : texts) {
+            assertThat(tokenizerWords(text)).isEqualTo(regexWords(text));
+        }
+        double megabytes = Benchmarks.totalChars(texts) * 2 / 1e6;
+
+        long regex = Benchmarks.medianNanos("regex", 3, 7, () -> texts.stream().mapToInt(t -> regexWords(t).size()).sum());
+        long tokenizer = Benchmarks.medianNanos("TextTokenizer", 3, 7,
+                () -> texts.stream().mapToInt(t -> tokenizerWords(t).size()).sum());
+
+        System.out.printf("%.1f МБ текста: regex %.1f МБ/с, TextTokenizer %.1f МБ/с, ускорение %.1f раза%n", megabytes,
+                megabytes / (regex / 1e9), megabytes / (tokenizer / 1e9), (double) regex / tokenizer);
+    }
+
+    private static Set<String> tokenizerWords(String text) {
+        Set<String> words = new HashSet<>();
+        TextTokenizer.tokenize(text, 3, (word, position, script) -> {
+            if (script == TextTokenizer.Script.CYRILLIC) {
+                words.add(word);
+            }
+        });
+        return words;
+    }
+
+    /**
+     * Прежние splitWords и isWord из LemmaExtraction.
+     */
+    private static Set<String> regexWords(String text) {
+        String[] wordsArray = text.toLowerCase(Locale.ROOT)
+                .replaceAll("([^а-яa-z\\s])", " ")
+                .trim()
+                .split("\\s+");
+        return Arrays.stream(wordsArray)
+                .filter(w -> w.length() > 2 && !w.isBlank())
+                .filter(w -> w.matches(PATTERN))
+                .collect(Collectors.toCollection(HashSet::new));
+    }
+}